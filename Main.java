@@ -1,7 +1,12 @@
+import archive.ArchiveRecorder;
+import archive.OpeningBook;
 import controller.GameController;
 import controller.MenuController;
 import view.GameContainer;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 /**
  * The Main class serves as the entry point of the application.
  * This class follows the MVC (Model-View-Controller) architectural pattern
@@ -20,5 +25,27 @@ public class Main {
         // Initialize the view.GameContainer (View)
         GameContainer gameContainer = new GameContainer(gameController, menuController);
 
+        // Suggest moves from an opening book when one is configured,
+        // for example with -Dkwazam.book=savefiles/archive.kob
+        String bookFile = System.getProperty("kwazam.book");
+        if (bookFile != null) {
+            try {
+                gameController.setOpeningBook(new OpeningBook(Path.of(bookFile)));
+            } catch (IOException e) {
+                System.out.println("Failed to open the opening book: " + e.getMessage());
+            }
+        }
+
+        // Record saved games in an archive and its position index when one is configured,
+        // for example with -Dkwazam.archive=savefiles/archive
+        String archiveBase = System.getProperty("kwazam.archive");
+        if (archiveBase != null) {
+            try {
+                ArchiveRecorder.open(Path.of(archiveBase), Path.of(archiveBase));
+            } catch (IOException e) {
+                System.out.println("Failed to open the game archive: " + e.getMessage());
+            }
+        }
+
     }
 }
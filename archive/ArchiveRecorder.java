@@ -0,0 +1,99 @@
+package archive;
+
+import controller.SaveLoadManager;
+import controller.SaveListener;
+import model.SavedGame;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Keeps a GameArchive and its PositionIndex up to date with the games saved through
+ * SaveLoadManager: every saved game is appended to the archive and its positions are added to
+ * the index straight away, so new games can be found without rebuilding anything.
+ *
+ * Games whose moves history is not in MoveNotation cannot be replayed and are not recorded.
+ * Before recording, the index is brought up to date with games appended to the archive by other
+ * means, such as BulkConverter.
+ */
+public class ArchiveRecorder implements SaveListener, AutoCloseable {
+    private final GameArchive archive;
+    private final PositionIndex index;
+
+    /**
+     * Opens an archive and its index and starts recording saves into them.
+     *
+     * @param archiveBase The base path of the archive.
+     * @param indexBase The base path of the position index.
+     * @return The recorder, already registered with SaveLoadManager.
+     * @throws IOException If the archive or the index cannot be opened or updated.
+     */
+    public static ArchiveRecorder open(Path archiveBase, Path indexBase) throws IOException {
+        GameArchive archive = new GameArchive(archiveBase);
+        PositionIndex index = new PositionIndex(indexBase);
+        index.update(archive);
+        ArchiveRecorder recorder = new ArchiveRecorder(archive, index);
+        SaveLoadManager.addSaveListener(recorder);
+        return recorder;
+    }
+
+    /**
+     * Creates a recorder for an archive and its index. It is not registered with SaveLoadManager.
+     *
+     * @param archive The archive to append saved games to.
+     * @param index The index of the archive, covering all of its games.
+     */
+    public ArchiveRecorder(GameArchive archive, PositionIndex index) {
+        this.archive = archive;
+        this.index = index;
+    }
+
+    /**
+     * Appends a saved game to the archive and indexes its positions.
+     *
+     * @param savedGame The game as it was saved.
+     * @param filePath The path of the save file, used in messages only.
+     */
+    @Override
+    public synchronized void gameSaved(SavedGame savedGame, String filePath) {
+        if (savedGame.getMoveCount() != savedGame.getMovesHistory().size()) {
+            System.out.println("Not archiving " + filePath + ": its moves cannot be replayed");
+            return;
+        }
+        try {
+            if (index.getGames() < archive.size()) {
+                index.update(archive);
+            }
+            int game = archive.append(SaveLoadManager.encodeBinary(savedGame));
+            index.add(game, savedGame);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Failed to archive " + filePath + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return The archive saved games are appended to.
+     */
+    public GameArchive getArchive() {
+        return archive;
+    }
+
+    /**
+     * @return The index of the archive.
+     */
+    public PositionIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Stops recording saves and closes the archive and the index.
+     *
+     * @throws IOException If closing fails.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        SaveLoadManager.removeSaveListener(this);
+        index.close();
+        archive.close();
+    }
+}
@@ -0,0 +1,317 @@
+package archive;
+
+import controller.SaveLoadManager;
+import model.BitboardPosition;
+import model.GameReplay;
+import model.GameState;
+import model.Move;
+import model.MoveGenerator;
+import model.MoveNotation;
+import model.SavedGame;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Converts saved games in bulk between the text save files and the binary formats, streaming
+ * over the input so that only the games currently being worked on are held in memory.
+ *
+ * Usage:
+ * java archive.BulkConverter import saveDir archiveBase [threads]
+ *     appends every text save in saveDir to the GameArchive at archiveBase
+ * java archive.BulkConverter import-binary saveDir outDir [threads]
+ *     writes every text save in saveDir to outDir as a binary save of the same name
+ * java archive.BulkConverter export archiveBase outDir [threads]
+ *     writes every game of the archive to outDir as a text save named game-N.txt
+ *
+ * Files are parsed, checked and encoded on a fixed pool of worker threads fed through a small
+ * bounded queue: when the workers fall behind, the thread listing the directory runs the next
+ * file itself instead of queueing more, so memory stays flat however many files there are.
+ *
+ * On import the moves history of a text save is replayed from the initial setup to rebuild its
+ * move log. Entries in MoveNotation name both squares and are replayed with GameReplay; older
+ * saves only record the destination of each move, so where such an entry could have been played
+ * by more than one piece, each candidate is tried until the replay ends in exactly the position
+ * written in the file. The number of moves tried is capped at MAX_REPLAY_MOVES, so a history
+ * with many ambiguous entries cannot make the search blow up exponentially. A save whose history
+ * cannot be replayed to its position within that budget is reported and skipped. The imported game takes its Ram directions from the replay, which are
+ * not written in text saves at all.
+ */
+public class BulkConverter {
+    /** The most moves tried while replaying one ambiguous history before the file is rejected. */
+    public static final int MAX_REPLAY_MOVES = 100_000;
+
+    private static final BitboardPosition INITIAL_POSITION = new GameState().getBitboards().copy();
+
+    private final ExecutorService workers;
+    private final AtomicLong converted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.out.println("Usage: java archive.BulkConverter import|import-binary|export input output [threads]");
+            return;
+        }
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        Path input = Path.of(args[1]);
+        Path output = Path.of(args[2]);
+
+        BulkConverter converter = new BulkConverter(threads);
+        long start = System.nanoTime();
+        switch (args[0]) {
+            case "import" -> {
+                try (GameArchive archive = new GameArchive(output)) {
+                    converter.importTo(input, archive);
+                    archive.flush();
+                }
+            }
+            case "import-binary" -> converter.importToFiles(input, output);
+            case "export" -> {
+                try (GameArchive archive = new GameArchive(input)) {
+                    converter.export(archive, output);
+                }
+            }
+            default -> {
+                System.out.println("Unknown mode: " + args[0]);
+                return;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long games = converter.getConverted();
+        System.out.printf("Converted %d games (%d rejected) in %.2f s: %.0f games/s%n",
+                games, converter.getRejected(), seconds, games / Math.max(seconds, 1e-9));
+    }
+
+    /**
+     * Creates a converter with its worker pool. The pool is shut down at the end of each
+     * conversion, so a converter is used for one conversion only.
+     *
+     * @param threads The number of worker threads.
+     */
+    public BulkConverter(int threads) {
+        workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Imports every text save of a directory into an archive.
+     *
+     * @param directory The directory holding the text saves.
+     * @param archive The archive to append to.
+     * @throws IOException If the directory cannot be listed.
+     * @throws InterruptedException If interrupted while waiting for the workers.
+     */
+    public void importTo(Path directory, GameArchive archive) throws IOException, InterruptedException {
+        forEachTextSave(directory, file -> {
+            byte[] record = SaveLoadManager.encodeBinary(readAndValidate(file));
+            // Appends must come from one thread at a time
+            synchronized (archive) {
+                archive.append(record);
+            }
+        });
+    }
+
+    /**
+     * Converts every text save of a directory into a binary save file.
+     *
+     * @param directory The directory holding the text saves.
+     * @param output The directory to write the binary saves to.
+     * @throws IOException If a directory cannot be listed or created.
+     * @throws InterruptedException If interrupted while waiting for the workers.
+     */
+    public void importToFiles(Path directory, Path output) throws IOException, InterruptedException {
+        Files.createDirectories(output);
+        forEachTextSave(directory, file -> {
+            String name = file.getFileName().toString();
+            name = name.substring(0, name.length() - ".txt".length()) + SaveLoadManager.BINARY_EXTENSION;
+            Files.write(output.resolve(name), SaveLoadManager.encodeBinary(readAndValidate(file)));
+        });
+    }
+
+    /**
+     * Exports every game of an archive as a text save.
+     *
+     * @param archive The archive to read.
+     * @param output The directory to write the text saves to.
+     * @throws IOException If the output directory cannot be created.
+     * @throws InterruptedException If interrupted while waiting for the workers.
+     */
+    public void export(GameArchive archive, Path output) throws IOException, InterruptedException {
+        Files.createDirectories(output);
+        int games = archive.size();
+        for (int i = 0; i < games; i++) {
+            int game = i;
+            submit("game " + game, () -> {
+                SavedGame savedGame = SaveLoadManager.decodeBinary(archive.record(game));
+                try (BufferedWriter writer = Files.newBufferedWriter(output.resolve("game-" + game + ".txt"))) {
+                    SaveLoadManager.writeText(savedGame, writer);
+                }
+            });
+        }
+        finish();
+    }
+
+    /**
+     * @return The number of games converted so far.
+     */
+    public long getConverted() {
+        return converted.get();
+    }
+
+    /**
+     * @return The number of games skipped because they could not be read or did not validate.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Parses a text save and checks it by replaying its moves history.
+     *
+     * @param file The text save.
+     * @return The game with its move log filled in.
+     * @throws IOException If the file cannot be read, is malformed or does not replay to its position.
+     */
+    public static SavedGame readAndValidate(Path file) throws IOException {
+        SavedGame parsed;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+            parsed = SaveLoadManager.parseText(reader);
+        }
+        List<String> history = parsed.getMovesHistory();
+        int[] moves = new int[history.size()];
+        BitboardPosition position;
+        if (parsed.getMoveCount() == history.size()) {
+            // Every entry names its origin square, so the move log parsed from it replays as it is
+            for (int i = 0; i < moves.length; i++) {
+                moves[i] = parsed.getMove(i);
+            }
+            try {
+                position = new GameReplay(moves, moves.length).playOut(new BitboardPosition());
+            } catch (IllegalStateException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        } else {
+            position = INITIAL_POSITION.copy();
+            if (!replay(position, history, 0, moves, parsed, new int[]{MAX_REPLAY_MOVES})) {
+                throw new IOException("Moves history does not lead to the saved position");
+            }
+        }
+        if (!matches(position, parsed)) {
+            throw new IOException("Moves history does not lead to the saved position");
+        }
+        return SavedGame.of(position, moves, history);
+    }
+
+    // Plays older history entries from index on, backtracking over ambiguous entries. On success
+    // the position is left at the end of the game and moves holds the compact moves played.
+    // budget[0] counts down the moves still allowed; running out fails the whole file.
+    private static boolean replay(BitboardPosition position, List<String> history, int index, int[] moves, SavedGame target,
+            int[] budget) throws IOException {
+        if (index == history.size()) {
+            return matches(position, target);
+        }
+        String entry = history.get(index);
+        int[] parsed = parseEntry(entry);
+        int[] candidates = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(position, candidates);
+        for (int i = 0; i < count; i++) {
+            int move = candidates[i];
+            if (Move.piece(move) != parsed[0] || Move.to(move) != parsed[1] || Move.isCapture(move) != (parsed[2] != 0)
+                    || (parsed[3] >= 0 && Move.from(move) != parsed[3])) {
+                continue;
+            }
+            if (--budget[0] < 0) {
+                throw new IOException("Moves history is too ambiguous to replay");
+            }
+            position.makeMove(move);
+            moves[index] = Move.compact(move);
+            if (replay(position, history, index + 1, moves, target, budget)) {
+                return true;
+            }
+            position.unmakeMove();
+        }
+        return false;
+    }
+
+    // Splits a history entry into piece type, destination, capture flag and origin. Entries in
+    // MoveNotation name their origin; older entries such as "Ram B6" or "Tor x C5" give -1 for it.
+    private static int[] parseEntry(String entry) throws IOException {
+        int move = MoveNotation.parse(entry);
+        if (move != Move.NONE) {
+            return new int[]{Move.piece(move), Move.to(move), Move.isCapture(move) ? 1 : 0, Move.from(move)};
+        }
+        String[] parts = entry.split(" ");
+        boolean capture = parts.length == 3 && parts[1].equals("x");
+        String square = parts[parts.length - 1];
+        int type = BitboardPosition.typeOf(parts[0]);
+        if ((parts.length != 2 && !capture) || type == BitboardPosition.NO_PIECE || square.length() < 2) {
+            throw new IOException("Unreadable history entry: " + entry);
+        }
+        int col = square.charAt(0) - 'A';
+        int row = square.charAt(1) - '1';
+        if (col < 0 || col >= BitboardPosition.COLUMNS || row < 0 || row >= BitboardPosition.ROWS) {
+            throw new IOException("Unreadable history entry: " + entry);
+        }
+        return new int[]{type, BitboardPosition.square(col, row), capture ? 1 : 0, -1};
+    }
+
+    private static boolean matches(BitboardPosition position, SavedGame target) {
+        if (position.getTurnCount() != target.getTurnCount() || position.getSideToMove() != target.getCurrentTurn()
+                || Long.bitCount(position.occupancy()) != target.getPieceCount()) {
+            return false;
+        }
+        for (int i = 0; i < target.getPieceCount(); i++) {
+            int code = target.getPiece(i);
+            int square = SavedGame.square(code);
+            if (position.pieceTypeAt(square) != SavedGame.type(code) || position.ownerAt(square) != SavedGame.side(code)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void forEachTextSave(Path directory, FileTask task) throws IOException, InterruptedException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.txt")) {
+            for (Path file : files) {
+                submit(file.toString(), () -> task.run(file));
+            }
+        }
+        finish();
+    }
+
+    private void submit(String name, Task task) {
+        workers.execute(() -> {
+            try {
+                task.run();
+                converted.incrementAndGet();
+            } catch (IOException | RuntimeException e) {
+                rejected.incrementAndGet();
+                System.out.println("Skipped " + name + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private void finish() throws InterruptedException {
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    }
+
+    private interface Task {
+        void run() throws IOException;
+    }
+
+    private interface FileTask {
+        void run(Path file) throws IOException;
+    }
+}
@@ -0,0 +1,240 @@
+package archive;
+
+import controller.SaveLoadManager;
+import model.GameState;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An append-only archive of saved games in two files, read through memory mapping, so that any
+ * game can be fetched by its number in constant time and all games can be streamed without
+ * opening a file per game.
+ *
+ * The data file (".kga") holds the games back to back, each one encoded in the binary save
+ * format of SaveLoadManager, checksum included. The index file (".kgi") holds one big-endian
+ * long per game: the offset in the data file where that game ends. Game N therefore spans from
+ * the end of game N - 1 (or 0) to its own end. A game is written to the data file before its
+ * index entry, so an append interrupted half way leaves at most some unindexed bytes at the end
+ * of the data file, which are discarded the next time the archive is opened.
+ *
+ * Both files are mapped read-only. The data file is mapped in segments of SEGMENT_BYTES that
+ * overlap by MAX_RECORD_BYTES, so a file of any size can be mapped and every game lies entirely
+ * within the segment it starts in. Mappings are extended lazily, the first time a game appended
+ * since the last mapping is read.
+ *
+ * Any number of threads may read at once. Appends must come from one thread at a time.
+ */
+public class GameArchive implements AutoCloseable, Iterable<ByteBuffer> {
+    public static final String DATA_EXTENSION = ".kga";
+    public static final String INDEX_EXTENSION = ".kgi";
+    public static final int MAX_RECORD_BYTES = 1 << 20;
+
+    private static final long SEGMENT_BYTES = 1L << 30;
+
+    private final FileChannel data;
+    private final FileChannel index;
+    private volatile Mapping mapping;
+    private volatile long dataSize;
+    private volatile int size;
+
+    /**
+     * Opens an archive, creating its files if they do not exist yet.
+     *
+     * @param base The path of the archive without extension; ".kga" and ".kgi" are appended.
+     * @throws IOException If the files cannot be opened or the index is damaged.
+     */
+    public GameArchive(Path base) throws IOException {
+        data = FileChannel.open(Path.of(base + DATA_EXTENSION),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = FileChannel.open(Path.of(base + INDEX_EXTENSION),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long indexBytes = index.size() - index.size() % Long.BYTES;
+        if (indexBytes / Long.BYTES > Integer.MAX_VALUE) {
+            throw new IOException("Archive index too large");
+        }
+        index.truncate(indexBytes);
+        size = (int) (indexBytes / Long.BYTES);
+        mapping = new Mapping(index, (long) size * Long.BYTES, new MappedByteBuffer[0], 0);
+        dataSize = size == 0 ? 0 : mapping.offsets.get(size - 1);
+        if (dataSize > data.size()) {
+            throw new IOException("Archive index points past the end of the data file");
+        }
+        data.truncate(dataSize);
+    }
+
+    /**
+     * Retrieves the number of games in the archive.
+     *
+     * @return The game count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends an encoded game to the archive.
+     *
+     * @param record The game in the binary save format.
+     * @return The number of the new game.
+     * @throws IOException If writing fails or the record is larger than MAX_RECORD_BYTES.
+     */
+    public int append(byte[] record) throws IOException {
+        if (record.length > MAX_RECORD_BYTES) {
+            throw new IOException("Game record too large: " + record.length + " bytes");
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(record);
+        long position = dataSize;
+        while (bytes.hasRemaining()) {
+            position += data.write(bytes, position);
+        }
+        ByteBuffer entry = ByteBuffer.allocate(Long.BYTES).putLong(0, position);
+        long indexPosition = (long) size * Long.BYTES;
+        while (entry.hasRemaining()) {
+            indexPosition += index.write(entry, indexPosition);
+        }
+        dataSize = position;
+        return size++;
+    }
+
+    /**
+     * Appends a game to the archive, encoded with SaveLoadManager.encodeBinary.
+     *
+     * @param gameState The game to append.
+     * @return The number of the new game.
+     * @throws IOException If writing fails.
+     */
+    public int append(GameState gameState) throws IOException {
+        return append(SaveLoadManager.encodeBinary(gameState));
+    }
+
+    /**
+     * Retrieves a game without copying it out of the mapped file.
+     *
+     * @param game The number of the game, from 0 to size() - 1.
+     * @return A read-only buffer holding exactly the encoded game.
+     * @throws IOException If the data file cannot be mapped.
+     */
+    public ByteBuffer record(int game) throws IOException {
+        if (game < 0 || game >= size) {
+            throw new IndexOutOfBoundsException("Game " + game + " of " + size);
+        }
+        Mapping current = mapping;
+        if (game >= current.games) {
+            current = remap();
+        }
+        long start = game == 0 ? 0 : current.offsets.get(game - 1);
+        int length = (int) (current.offsets.get(game) - start);
+        ByteBuffer segment = current.segments[(int) (start / SEGMENT_BYTES)];
+        return segment.slice((int) (start % SEGMENT_BYTES), length).asReadOnlyBuffer();
+    }
+
+    /**
+     * Loads a game from the archive into a game state.
+     *
+     * @param game The number of the game.
+     * @param gameState The game state to load into.
+     * @throws IOException If the game cannot be read or is damaged.
+     */
+    public void load(int game, GameState gameState) throws IOException {
+        SaveLoadManager.decodeBinary(record(game)).applyTo(gameState);
+    }
+
+    /**
+     * Streams over all games in order, each as a read-only buffer over the mapped file.
+     *
+     * @return An iterator over the encoded games.
+     */
+    @Override
+    public Iterator<ByteBuffer> iterator() {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public ByteBuffer next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    return record(next++);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to read game " + (next - 1), e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Writes appended games through to the storage device.
+     *
+     * @throws IOException If flushing fails.
+     */
+    public void flush() throws IOException {
+        data.force(false);
+        index.force(false);
+    }
+
+    /**
+     * Closes both files. Buffers returned by record must not be used afterwards.
+     *
+     * @throws IOException If closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        data.close();
+        index.close();
+    }
+
+    // Maps everything appended so far; readers still holding the previous mapping are unaffected
+    private synchronized Mapping remap() throws IOException {
+        Mapping current = mapping;
+        // Read the game count first: the data it covers was written before it was published
+        int games = size;
+        long end = dataSize;
+        if (current.games == games) {
+            return current;
+        }
+        // Keep the full segments, re-map the last one, which may have grown, and add new ones
+        int kept = Math.max(0, current.segments.length - 1);
+        ArrayList<MappedByteBuffer> segments = new ArrayList<>();
+        for (int i = 0; i < kept; i++) {
+            segments.add(current.segments[i]);
+        }
+        for (long start = kept * SEGMENT_BYTES; start < end; start += SEGMENT_BYTES) {
+            long length = Math.min(end - start, SEGMENT_BYTES + MAX_RECORD_BYTES);
+            segments.add(data.map(FileChannel.MapMode.READ_ONLY, start, length));
+        }
+        mapping = new Mapping(index, (long) games * Long.BYTES, segments.toArray(new MappedByteBuffer[0]), games);
+        return mapping;
+    }
+
+    /**
+     * An immutable view of the mapped files, covering the first games games.
+     */
+    private static final class Mapping {
+        private final LongBuffer offsets;
+        private final MappedByteBuffer[] segments;
+        private final int games;
+
+        Mapping(FileChannel index, long indexBytes, MappedByteBuffer[] segments, int games) throws IOException {
+            this.offsets = index.map(FileChannel.MapMode.READ_ONLY, 0, indexBytes).order(ByteOrder.BIG_ENDIAN).asLongBuffer();
+            this.segments = segments;
+            this.games = games;
+        }
+    }
+}
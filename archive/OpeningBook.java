@@ -0,0 +1,357 @@
+package archive;
+
+import controller.SaveLoadManager;
+import model.BitboardPosition;
+import model.GameReplay;
+import model.Move;
+import model.MoveGenerator;
+import model.MoveNotation;
+import model.SavedGame;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An opening book built from the games of a GameArchive: for every position reached in the first
+ * plies of the archived games, the moves played from it and how the games went on to end.
+ *
+ * Every game always starts from the setup of GameState.setPieces, so the early positions are
+ * shared by very many games and the book stays small. The book is a single sorted file (".kob"),
+ * mapped read-only and searched with a binary search, so a lookup touches a few cache lines and
+ * allocates nothing. After a 16-byte header (the magic "KBOK", the number of plies covered and
+ * the number of entries) come the entries, sorted by key and move, of ENTRY_BYTES each:
+ * 8 bytes   the position key (see BitboardPosition.getKey)
+ * 4 bytes   the move, in compact form (see Move.compact)
+ * 4 bytes   the number of games the player making the move went on to win
+ * 4 bytes   the number of games that ended without a winner
+ * 4 bytes   the number of games the player making the move went on to lose
+ * All numbers are big-endian. A game has a winner when its final position lacks one side's Sau;
+ * games saved before the end count as having no winner.
+ *
+ * Usage: java archive.OpeningBook archiveBase bookFile [plies]
+ */
+public class OpeningBook {
+    public static final String EXTENSION = ".kob";
+    public static final int DEFAULT_PLIES = 16;
+    public static final int ENTRY_BYTES = 24;
+
+    private static final int MAGIC = 'K' << 24 | 'B' << 16 | 'O' << 8 | 'K';
+    private static final int HEADER_BYTES = 16;
+
+    private final MappedByteBuffer entries;
+    private final int plies;
+    private final int size;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java archive.OpeningBook archiveBase bookFile [plies]");
+            return;
+        }
+        int plies = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PLIES;
+        long start = System.nanoTime();
+        try (GameArchive archive = new GameArchive(Path.of(args[0]))) {
+            build(archive, Path.of(args[1]), plies);
+        }
+        OpeningBook book = new OpeningBook(Path.of(args[1]));
+        System.out.printf("Built a book of %d entries over %d plies in %.2f s%n",
+                book.size(), plies, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Opens a book file.
+     *
+     * @param file The book file.
+     * @throws IOException If the file cannot be read or is not a valid book.
+     */
+    public OpeningBook(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_BYTES || length > Integer.MAX_VALUE) {
+                throw new IOException("Not an opening book: " + file);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (mapped.getInt(0) != MAGIC || mapped.getLong(8) != (length - HEADER_BYTES) / ENTRY_BYTES
+                    || (length - HEADER_BYTES) % ENTRY_BYTES != 0) {
+                throw new IOException("Not an opening book: " + file);
+            }
+            entries = mapped;
+            plies = mapped.getInt(4);
+            size = (int) mapped.getLong(8);
+        }
+    }
+
+    /**
+     * Builds a book from the first plies of every game in an archive. Games that cannot be read
+     * or replayed are reported and left out.
+     *
+     * @param archive The archive to read.
+     * @param file The book file to write, replaced if it exists.
+     * @param plies The number of plies to take from the start of every game.
+     * @throws IOException If the book cannot be written.
+     */
+    public static void build(GameArchive archive, Path file, int plies) throws IOException {
+        Map<Line, int[]> lines = new HashMap<>();
+        BitboardPosition board = new BitboardPosition();
+        int[] moves = new int[plies];
+        for (int game = 0; game < archive.size(); game++) {
+            try {
+                SavedGame savedGame = SaveLoadManager.decodeBinary(archive.record(game));
+                int winner = winner(savedGame);
+                int count = Math.min(plies, savedGame.getMoveCount());
+                for (int i = 0; i < count; i++) {
+                    moves[i] = savedGame.getMove(i);
+                }
+                GameReplay replay = new GameReplay(moves, count);
+                int illegal = replay.firstIllegalMove(board);
+                if (illegal >= 0) {
+                    throw new IllegalStateException("Move " + (illegal + 1) + " is not legal");
+                }
+                GameReplay.Cursor cursor = replay.replayOn(board);
+                cursor.next();
+                while (cursor.hasNext()) {
+                    long key = board.getKey();
+                    int mover = board.getSideToMove();
+                    cursor.next();
+                    int[] results = lines.computeIfAbsent(new Line(key, Move.compact(cursor.getLastMove())), line -> new int[3]);
+                    results[winner < 0 ? 1 : winner == mover ? 0 : 2]++;
+                }
+            } catch (IOException | IllegalStateException e) {
+                System.out.println("Skipped game " + game + ": " + e.getMessage());
+            }
+        }
+
+        List<Map.Entry<Line, int[]>> sorted = new ArrayList<>(lines.entrySet());
+        sorted.sort(Map.Entry.comparingByKey());
+        if ((long) sorted.size() * ENTRY_BYTES + HEADER_BYTES > Integer.MAX_VALUE) {
+            throw new IOException("Opening book too large; use fewer plies");
+        }
+        Path temporary = Path.of(file + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(plies);
+            out.writeLong(sorted.size());
+            for (Map.Entry<Line, int[]> entry : sorted) {
+                out.writeLong(entry.getKey().key);
+                out.writeInt(entry.getKey().move);
+                out.writeInt(entry.getValue()[0]);
+                out.writeInt(entry.getValue()[1]);
+                out.writeInt(entry.getValue()[2]);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return The number of entries in the book.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The number of plies from the start of each game the book was built from.
+     */
+    public int getPlies() {
+        return plies;
+    }
+
+    /**
+     * Finds the entries of a position. They are stored next to each other, so the entries of the
+     * position run from the returned index for as long as key returns the same key.
+     *
+     * @param key The position key.
+     * @return The index of the first entry of the position, or -1 if the book does not have it.
+     */
+    public int find(long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (key(middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low < size && key(low) == key ? low : -1;
+    }
+
+    /**
+     * @param entry The index of an entry.
+     * @return The key of the position the entry belongs to.
+     */
+    public long key(int entry) {
+        return entries.getLong(HEADER_BYTES + entry * ENTRY_BYTES);
+    }
+
+    /**
+     * @param entry The index of an entry.
+     * @return The move, in compact form.
+     */
+    public int move(int entry) {
+        return entries.getInt(HEADER_BYTES + entry * ENTRY_BYTES + 8);
+    }
+
+    /**
+     * @param entry The index of an entry.
+     * @return The number of games won by the player who made the move.
+     */
+    public int wins(int entry) {
+        return entries.getInt(HEADER_BYTES + entry * ENTRY_BYTES + 12);
+    }
+
+    /**
+     * @param entry The index of an entry.
+     * @return The number of games that ended without a winner.
+     */
+    public int draws(int entry) {
+        return entries.getInt(HEADER_BYTES + entry * ENTRY_BYTES + 16);
+    }
+
+    /**
+     * @param entry The index of an entry.
+     * @return The number of games lost by the player who made the move.
+     */
+    public int losses(int entry) {
+        return entries.getInt(HEADER_BYTES + entry * ENTRY_BYTES + 20);
+    }
+
+    /**
+     * @param entry The index of an entry.
+     * @return The number of games in which the move was played.
+     */
+    public int games(int entry) {
+        return wins(entry) + draws(entry) + losses(entry);
+    }
+
+    /**
+     * @param entry The index of an entry.
+     * @return The score of the move for the player making it, from 0 to 1, counting a game without
+     *         a winner as half a win.
+     */
+    public double score(int entry) {
+        return (wins(entry) + draws(entry) * 0.5) / games(entry);
+    }
+
+    /**
+     * Picks the book move with the best score in a position, among moves played in at least a
+     * given number of games.
+     *
+     * @param position The position, with the side to move to play.
+     * @param minGames The number of games a move needs to have been played in to be considered.
+     * @return The move as a full packed move that is legal in the position, or Move.NONE if the
+     *         book has no such move.
+     */
+    public int bestMove(BitboardPosition position, int minGames) {
+        int first = find(position.getKey());
+        if (first < 0) {
+            return Move.NONE;
+        }
+        int best = -1;
+        for (int entry = first; entry < size && key(entry) == key(first); entry++) {
+            if (games(entry) >= minGames && (best < 0 || score(entry) > score(best))) {
+                best = entry;
+            }
+        }
+        return best < 0 ? Move.NONE : legalMove(position, move(best));
+    }
+
+    /**
+     * Lists the book moves of a position for display, the most often played first, for example
+     * "Ram A7-A6  12 games, 58%".
+     *
+     * @param position The position.
+     * @param limit The maximum number of moves to list.
+     * @return The descriptions, empty if the book does not have the position.
+     */
+    public List<String> describe(BitboardPosition position, int limit) {
+        int first = find(position.getKey());
+        if (first < 0) {
+            return List.of();
+        }
+        int end = first;
+        while (end < size && key(end) == key(first)) {
+            end++;
+        }
+        Integer[] order = new Integer[end - first];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = first + i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(games(b), games(a)));
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < order.length && i < limit; i++) {
+            int entry = order[i];
+            lines.add(String.format("%s  %d games, %.0f%%", MoveNotation.format(move(entry)), games(entry), score(entry) * 100));
+        }
+        return lines;
+    }
+
+    // Checks a book move against the moves of the position, guarding against key collisions
+    private static int legalMove(BitboardPosition position, int compact) {
+        int[] moves = new int[MoveGenerator.MAX_PIECE_MOVES];
+        int from = Move.from(compact);
+        if (from >= BitboardPosition.SQUARES || position.ownerAt(from) != position.getSideToMove()) {
+            return Move.NONE;
+        }
+        int count = MoveGenerator.generateFrom(position, from, moves, 0);
+        for (int i = 0; i < count; i++) {
+            if (Move.compact(moves[i]) == compact) {
+                return moves[i];
+            }
+        }
+        return Move.NONE;
+    }
+
+    // The side whose Sau survives when the other one's has been captured, or -1
+    private static int winner(SavedGame savedGame) {
+        boolean[] hasSau = new boolean[2];
+        for (int i = 0; i < savedGame.getPieceCount(); i++) {
+            int code = savedGame.getPiece(i);
+            if (SavedGame.type(code) == BitboardPosition.SAU) {
+                hasSau[SavedGame.side(code)] = true;
+            }
+        }
+        return hasSau[0] == hasSau[1] ? -1 : hasSau[0] ? 0 : 1;
+    }
+
+    /**
+     * A position and a move played from it, the unit the book counts results for.
+     */
+    private static final class Line implements Comparable<Line> {
+        private final long key;
+        private final int move;
+
+        Line(long key, int move) {
+            this.key = key;
+            this.move = move;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Line line && line.key == key && line.move == move;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(key) * 31 + move;
+        }
+
+        @Override
+        public int compareTo(Line other) {
+            int byKey = Long.compare(key, other.key);
+            return byKey != 0 ? byKey : Integer.compare(move, other.move);
+        }
+    }
+}
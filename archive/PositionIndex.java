@@ -0,0 +1,576 @@
+package archive;
+
+import controller.SaveLoadManager;
+import model.BitboardPosition;
+import model.GameReplay;
+import model.GameState;
+import model.SavedGame;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An on-disk index from position keys to the games of a GameArchive that reach them, so that
+ * "which games went through this position" is answered without reading a single game.
+ *
+ * Every position of every game, from the initial setup to the final position, becomes one entry
+ * of two longs: the position's Zobrist key (see BitboardPosition.getKey) and a reference packing
+ * the game number and the ply, the number of moves played to reach the position. Positions are
+ * found by replaying each game's move log with GameReplay.
+ *
+ * The index lives in two files:
+ * ".kpx"  the sorted index: a 16-byte header (the magic "KPIX", the number of games covered and
+ *         the number of entries), then the entries sorted by key and reference. It is mapped
+ *         read-only and searched with a binary search.
+ * ".kpl"  the append log: entries of games indexed since the sorted index was last written, in
+ *         blocks of one game each. A block starts with its entry count and game number, so a
+ *         block cut short by a crash is recognised and dropped when the index is opened. The log
+ *         is also held in memory and scanned on every query.
+ * Both files are big-endian. Once the log holds MAX_LOG_ENTRIES entries it is merged into the
+ * sorted index, which rewrites the sorted file and empties the log.
+ *
+ * Building the index for a whole archive with update never holds more than RUN_ENTRIES entries
+ * in memory: entries are sorted in runs of that size, written to temporary files and merged
+ * together with the existing index in a single pass.
+ *
+ * Keys are 64-bit hashes, so two different positions may in principle share one; a caller that
+ * needs certainty can replay the games found to check them. Any number of threads may query at
+ * once; updates are serialised.
+ *
+ * Usage:
+ * java archive.PositionIndex build archiveBase indexBase
+ *     indexes every game of the archive not indexed yet
+ * java archive.PositionIndex query archiveBase indexBase saveFile
+ *     lists the games that reach the final position of a save file
+ */
+public class PositionIndex implements AutoCloseable {
+    public static final String SORTED_EXTENSION = ".kpx";
+    public static final String LOG_EXTENSION = ".kpl";
+    public static final int RUN_ENTRIES = 1 << 20;
+    public static final int MAX_LOG_ENTRIES = 1 << 16;
+
+    private static final int MAGIC = 'K' << 24 | 'P' << 16 | 'I' << 8 | 'X';
+    private static final int HEADER_BYTES = 16;
+    private static final int ENTRY_BYTES = 16;
+    // Entries per mapped segment of the sorted file, keeping every segment well under 2 GB
+    private static final int SEGMENT_SHIFT = 26;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final Path sortedPath;
+    private final FileChannel log;
+    private volatile Sorted sorted;
+
+    // The append log, in memory; guarded by this
+    private long[] logKeys = new long[1024];
+    private long[] logRefs = new long[1024];
+    private int logSize;
+    private int games;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3 || (args[0].equals("query") && args.length < 4)) {
+            System.out.println("Usage: java archive.PositionIndex build archiveBase indexBase");
+            System.out.println("       java archive.PositionIndex query archiveBase indexBase saveFile");
+            return;
+        }
+        try (GameArchive archive = new GameArchive(Path.of(args[1]));
+             PositionIndex index = new PositionIndex(Path.of(args[2]))) {
+            long start = System.nanoTime();
+            if (args[0].equals("build")) {
+                index.update(archive);
+                System.out.printf("Indexed %d games, %d positions in %.2f s%n",
+                        index.getGames(), index.getEntryCount(), (System.nanoTime() - start) / 1e9);
+                return;
+            }
+            GameState gameState = new GameState();
+            gameState.loadBoard(args[3]);
+            BitboardPosition position = gameState.getMoveLogSize() > 0
+                    ? GameReplay.of(gameState).playOut(new BitboardPosition())
+                    : gameState.getBitboards();
+            long[] refs = index.find(position.getKey());
+            double micros = (System.nanoTime() - start) / 1e3;
+            for (long ref : refs) {
+                System.out.println("game " + game(ref) + " ply " + ply(ref));
+            }
+            System.out.printf("%d matches in %.0f us%n", refs.length, micros);
+        }
+    }
+
+    /**
+     * Opens an index, creating its files if they do not exist yet.
+     *
+     * @param base The path of the index without extension; ".kpx" and ".kpl" are appended.
+     * @throws IOException If the files cannot be opened or the sorted index is damaged.
+     */
+    public PositionIndex(Path base) throws IOException {
+        sortedPath = Path.of(base + SORTED_EXTENSION);
+        if (!Files.exists(sortedPath)) {
+            writeSorted(new LongBuffer[0], 0);
+        }
+        sorted = Sorted.map(sortedPath);
+        games = sorted.games;
+
+        log = FileChannel.open(Path.of(base + LOG_EXTENSION), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        readLog();
+    }
+
+    /**
+     * Packs a game number and a ply into a reference.
+     *
+     * @param game The game number in the archive.
+     * @param ply The number of moves played to reach the position.
+     * @return The reference.
+     */
+    public static long ref(int game, int ply) {
+        return (long) game << 32 | (ply & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param ref A reference returned by find.
+     * @return The game number in the archive.
+     */
+    public static int game(long ref) {
+        return (int) (ref >>> 32);
+    }
+
+    /**
+     * @param ref A reference returned by find.
+     * @return The number of moves played in the game to reach the position.
+     */
+    public static int ply(long ref) {
+        return (int) ref;
+    }
+
+    /**
+     * Retrieves the number of archive games covered, counting from game 0.
+     *
+     * @return The number of the first game not indexed yet.
+     */
+    public synchronized int getGames() {
+        return games;
+    }
+
+    /**
+     * Retrieves the number of entries in the index, one per position per game.
+     *
+     * @return The entry count.
+     */
+    public synchronized long getEntryCount() {
+        return sorted.entries + logSize;
+    }
+
+    /**
+     * Finds every occurrence of a position.
+     *
+     * @param position The position to look up.
+     * @return The references of the games and plies reaching it; see game and ply.
+     */
+    public long[] find(BitboardPosition position) {
+        return find(position.getKey());
+    }
+
+    /**
+     * Finds every occurrence of a position key.
+     *
+     * @param key The position key.
+     * @return The references of the games and plies reaching it, in order; see game and ply.
+     */
+    public long[] find(long key) {
+        while (true) {
+            Sorted current = sorted;
+            long first = current.lowerBound(key);
+            long last = first;
+            while (last < current.entries && current.key(last) == key) {
+                last++;
+            }
+            long[] refs = new long[(int) (last - first)];
+            for (int i = 0; i < refs.length; i++) {
+                refs[i] = current.ref(first + i);
+            }
+            int count = refs.length;
+            synchronized (this) {
+                // A merge since the search moved the log into a new sorted index; search that one
+                if (sorted != current) {
+                    continue;
+                }
+                for (int i = 0; i < logSize; i++) {
+                    if (logKeys[i] == key) {
+                        if (count == refs.length) {
+                            refs = Arrays.copyOf(refs, Math.max(4, count * 2));
+                        }
+                        refs[count++] = logRefs[i];
+                    }
+                }
+            }
+            refs = Arrays.copyOf(refs, count);
+            Arrays.sort(refs);
+            return refs;
+        }
+    }
+
+    /**
+     * Indexes a game appended to the archive, writing its entries to the append log.
+     *
+     * @param game The number of the game in the archive, at least getGames().
+     * @param savedGame The game, with a move log for every move.
+     * @throws IOException If writing fails.
+     * @throws IllegalArgumentException If the game is already covered or has no full move log.
+     * @throws IllegalStateException If a move of the game is not legal.
+     */
+    public synchronized void add(int game, SavedGame savedGame) throws IOException {
+        if (game < games) {
+            throw new IllegalArgumentException("Game " + game + " is already indexed");
+        }
+        if (savedGame.getMoveCount() != savedGame.getMovesHistory().size()) {
+            throw new IllegalArgumentException("Game " + game + " has no move log to replay");
+        }
+        long[] keys = positionKeys(savedGame, new BitboardPosition());
+
+        ByteBuffer block = ByteBuffer.allocate(ENTRY_BYTES * (keys.length + 1));
+        block.putLong(keys.length).putLong(game);
+        for (int ply = 0; ply < keys.length; ply++) {
+            block.putLong(keys[ply]).putLong(ref(game, ply));
+        }
+        block.flip();
+        long position = log.size();
+        while (block.hasRemaining()) {
+            position += log.write(block, position);
+        }
+        for (int ply = 0; ply < keys.length; ply++) {
+            addToLog(keys[ply], ref(game, ply));
+        }
+        games = game + 1;
+        if (logSize >= MAX_LOG_ENTRIES) {
+            merge(new ArrayList<>(), games);
+        }
+    }
+
+    /**
+     * Indexes every game of an archive that is not covered yet and writes a new sorted index.
+     * Games whose moves cannot be replayed are reported and left out.
+     *
+     * @param archive The archive the index belongs to.
+     * @throws IOException If a file cannot be read or written.
+     */
+    public synchronized void update(GameArchive archive) throws IOException {
+        int total = archive.size();
+        if (total <= games && logSize == 0) {
+            return;
+        }
+        List<Path> runs = new ArrayList<>();
+        try {
+            long[] keys = new long[Math.min(RUN_ENTRIES, 1 << 16)];
+            long[] refs = new long[keys.length];
+            int count = 0;
+            BitboardPosition board = new BitboardPosition();
+            for (int game = games; game < total; game++) {
+                long[] positions;
+                try {
+                    positions = positionKeys(SaveLoadManager.decodeBinary(archive.record(game)), board);
+                } catch (IOException | IllegalStateException e) {
+                    System.out.println("Skipped game " + game + ": " + e.getMessage());
+                    continue;
+                }
+                for (int ply = 0; ply < positions.length; ply++) {
+                    if (count == keys.length) {
+                        if (count == RUN_ENTRIES) {
+                            runs.add(writeRun(keys, refs, count));
+                            count = 0;
+                        } else {
+                            keys = Arrays.copyOf(keys, Math.min(RUN_ENTRIES, count * 2));
+                            refs = Arrays.copyOf(refs, keys.length);
+                        }
+                    }
+                    keys[count] = positions[ply];
+                    refs[count++] = ref(game, ply);
+                }
+            }
+            if (count > 0) {
+                runs.add(writeRun(keys, refs, count));
+            }
+            merge(runs, Math.max(games, total));
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    /**
+     * Closes the append log. The sorted index stays mapped until it is garbage collected.
+     *
+     * @throws IOException If closing fails.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        log.close();
+    }
+
+    // Replays a game and returns the key of every position in it, the initial position first
+    private static long[] positionKeys(SavedGame savedGame, BitboardPosition board) {
+        int[] moves = new int[savedGame.getMoveCount()];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = savedGame.getMove(i);
+        }
+        long[] keys = new long[moves.length + 1];
+        GameReplay.Cursor cursor = new GameReplay(moves, moves.length).replayOn(board);
+        for (int ply = 0; cursor.hasNext(); ply++) {
+            keys[ply] = cursor.next().getKey();
+        }
+        return keys;
+    }
+
+    // Merges the sorted index, the append log and the given runs into a new sorted index covering
+    // the given number of games, deleting the runs afterwards
+    private void merge(List<Path> runs, int coveredGames) throws IOException {
+        List<FileChannel> channels = new ArrayList<>();
+        try {
+            if (logSize > 0) {
+                runs.add(writeRun(logKeys, logRefs, logSize));
+            }
+            List<LongBuffer> sources = new ArrayList<>(Arrays.asList(sorted.sources()));
+            for (Path run : runs) {
+                FileChannel channel = FileChannel.open(run, StandardOpenOption.READ);
+                channels.add(channel);
+                sources.add(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asLongBuffer());
+            }
+            writeSorted(sources.toArray(new LongBuffer[0]), coveredGames);
+        } finally {
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+        sorted = Sorted.map(sortedPath);
+        games = coveredGames;
+        // The log is only emptied once the sorted index holding its entries is in place
+        log.truncate(0);
+        logSize = 0;
+    }
+
+    // Writes the k-way merge of sorted sources, each a sequence of key and reference pairs
+    private void writeSorted(LongBuffer[] sources, int coveredGames) throws IOException {
+        Path temporary = Path.of(sortedPath + ".tmp");
+        long entries = 0;
+        for (LongBuffer source : sources) {
+            entries += source.remaining() / 2;
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(coveredGames);
+            out.writeLong(entries);
+            while (true) {
+                // Few sources are ever merged at once, so a linear scan for the smallest is enough
+                int best = -1;
+                for (int i = 0; i < sources.length; i++) {
+                    LongBuffer source = sources[i];
+                    if (source.hasRemaining() && (best < 0 || compare(source, sources[best]) < 0)) {
+                        best = i;
+                    }
+                }
+                if (best < 0) {
+                    break;
+                }
+                out.writeLong(sources[best].get());
+                out.writeLong(sources[best].get());
+            }
+            out.flush();
+            channel.force(false);
+        }
+        Files.move(temporary, sortedPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int compare(LongBuffer a, LongBuffer b) {
+        int byKey = Long.compare(a.get(a.position()), b.get(b.position()));
+        return byKey != 0 ? byKey : Long.compare(a.get(a.position() + 1), b.get(b.position() + 1));
+    }
+
+    // Sorts entries by key and reference and writes them to a temporary run file
+    private Path writeRun(long[] keys, long[] refs, int count) throws IOException {
+        long[][] sortedEntries = radixSort(keys, refs, count);
+        Path run = Files.createTempFile(sortedPath.toAbsolutePath().getParent(), "run", ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+            for (int i = 0; i < count; i++) {
+                out.writeLong(sortedEntries[0][i]);
+                out.writeLong(sortedEntries[1][i]);
+            }
+        }
+        return run;
+    }
+
+    // Stable least-significant-digit radix sort on the signed key, 16 bits per pass. Entries
+    // with equal keys stay in the order they were added, which is game and ply order except in
+    // the append log, so equal keys are finished with a comparison sort on the reference.
+    private static long[][] radixSort(long[] keys, long[] refs, int count) {
+        long[] k = Arrays.copyOf(keys, count);
+        long[] r = Arrays.copyOf(refs, count);
+        long[] kOut = new long[count];
+        long[] rOut = new long[count];
+        int[] offsets = new int[1 << 16];
+        for (int shift = 0; shift < 64; shift += 16) {
+            Arrays.fill(offsets, 0);
+            for (int i = 0; i < count; i++) {
+                offsets[digit(k[i], shift)]++;
+            }
+            int sum = 0;
+            for (int d = 0; d < offsets.length; d++) {
+                int n = offsets[d];
+                offsets[d] = sum;
+                sum += n;
+            }
+            for (int i = 0; i < count; i++) {
+                int at = offsets[digit(k[i], shift)]++;
+                kOut[at] = k[i];
+                rOut[at] = r[i];
+            }
+            long[] swap = k;
+            k = kOut;
+            kOut = swap;
+            swap = r;
+            r = rOut;
+            rOut = swap;
+        }
+        for (int start = 0; start < count; ) {
+            int end = start + 1;
+            while (end < count && k[end] == k[start]) {
+                end++;
+            }
+            if (end - start > 1) {
+                Arrays.sort(r, start, end);
+            }
+            start = end;
+        }
+        return new long[][]{k, r};
+    }
+
+    private static int digit(long key, int shift) {
+        return (int) (((key ^ Long.MIN_VALUE) >>> shift) & 0xFFFF);
+    }
+
+    private void addToLog(long key, long ref) {
+        if (logSize == logKeys.length) {
+            logKeys = Arrays.copyOf(logKeys, logSize * 2);
+            logRefs = Arrays.copyOf(logRefs, logSize * 2);
+        }
+        logKeys[logSize] = key;
+        logRefs[logSize++] = ref;
+    }
+
+    // Loads the complete blocks of the append log and cuts off a block left incomplete
+    private void readLog() throws IOException {
+        long size = log.size();
+        ByteBuffer bytes = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE));
+        while (bytes.hasRemaining() && log.read(bytes, bytes.position()) > 0) {
+            // Keep reading until the whole log is in memory
+        }
+        bytes.flip();
+        long valid = 0;
+        while (bytes.remaining() >= ENTRY_BYTES) {
+            long count = bytes.getLong();
+            int game = (int) bytes.getLong();
+            if (count < 0 || count > bytes.remaining() / ENTRY_BYTES) {
+                break;
+            }
+            for (long i = 0; i < count; i++) {
+                long key = bytes.getLong();
+                long ref = bytes.getLong();
+                // A block already merged into the sorted index before a crash is skipped
+                if (game >= sorted.games) {
+                    addToLog(key, ref);
+                }
+            }
+            games = Math.max(games, game + 1);
+            valid = bytes.position();
+        }
+        log.truncate(valid);
+    }
+
+    /**
+     * A read-only mapping of the sorted index file.
+     */
+    private static final class Sorted {
+        private final LongBuffer[] segments;
+        private final int games;
+        private final long entries;
+
+        private Sorted(LongBuffer[] segments, int games, long entries) {
+            this.segments = segments;
+            this.games = games;
+            this.entries = entries;
+        }
+
+        static Sorted map(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                    // Keep reading until the header is complete
+                }
+                header.flip();
+                if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                    throw new IOException("Not a position index: " + path);
+                }
+                int games = header.getInt();
+                long entries = header.getLong();
+                if (entries < 0 || HEADER_BYTES + entries * ENTRY_BYTES != channel.size()) {
+                    throw new IOException("Position index damaged: " + path);
+                }
+                int count = (int) ((entries + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+                LongBuffer[] segments = new LongBuffer[count];
+                for (int i = 0; i < count; i++) {
+                    long first = (long) i << SEGMENT_SHIFT;
+                    long length = Math.min(entries - first, 1L << SEGMENT_SHIFT);
+                    segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + first * ENTRY_BYTES,
+                            length * ENTRY_BYTES).asLongBuffer();
+                }
+                return new Sorted(segments, games, entries);
+            }
+        }
+
+        long key(long entry) {
+            return segments[(int) (entry >>> SEGMENT_SHIFT)].get((int) (entry & SEGMENT_MASK) * 2);
+        }
+
+        long ref(long entry) {
+            return segments[(int) (entry >>> SEGMENT_SHIFT)].get((int) (entry & SEGMENT_MASK) * 2 + 1);
+        }
+
+        // The first entry whose key is not less than the given key
+        long lowerBound(long key) {
+            long low = 0;
+            long high = entries;
+            while (low < high) {
+                long middle = (low + high) >>> 1;
+                if (key(middle) < key) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        // The segments as sequences of key and reference pairs, each read from its start
+        LongBuffer[] sources() {
+            LongBuffer[] sources = new LongBuffer[segments.length];
+            for (int i = 0; i < segments.length; i++) {
+                sources[i] = segments[i].duplicate();
+            }
+            return sources;
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package controller;
 
+import archive.OpeningBook;
 import model.*;
 import view.Board;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The GameController class serves as the main controller for managing the state and interactions
@@ -23,6 +25,8 @@ public class GameController extends Subject implements Mouse.MouseClickHandler{
     private static GameController gameController;
     private String winner;
     public boolean resetTimer;
+    private final int[] moveBuffer = new int[MoveGenerator.MAX_PIECE_MOVES];
+    private OpeningBook openingBook;
 
     /**
      * The GameController class manages the primary game logic and serves as
@@ -34,12 +38,21 @@ public class GameController extends Subject implements Mouse.MouseClickHandler{
      * the state of the game, manage piece movements, handle interactions with
      * the board, and determine game-ending conditions.
      *
-     * Implements the singleton design pattern to ensure there is only one
-     * instance of the game controller managing the game at a time.
+     * This constructor controls the game state shared by the desktop application.
      * Coded by Mishal Mann Nair
      */
     public GameController() {
-        gameState = GameState.getInstance();
+        this(GameState.getInstance());
+    }
+
+    /**
+     * Creates a controller for a specific game. Each game hosted in the same process gets its
+     * own GameState and its own GameController, and nothing mutable is shared between them.
+     *
+     * @param gameState The game this controller applies the rules to.
+     */
+    public GameController(GameState gameState) {
+        this.gameState = gameState;
         currentPiece = null;
         winner = null;
 //        this.timerController = new TimerController(600);
@@ -105,11 +118,53 @@ public class GameController extends Subject implements Mouse.MouseClickHandler{
     /**
      * The GameController class acts as the main mediator for gameplay operations,
      * encapsulating game logic and interactions between components.
-     * It implements the Singleton design pattern to ensure only one instance of the game controller exists.
+     * Returns the moves history of the game controlled by this instance.
      * Coded by Mishal Mann Nair
      */
-    public static ArrayList<String> getMovesHistory() {
-        return GameState.getInstance().getMovesHistory();
+    public ArrayList<String> getMovesHistory() {
+        return gameState.getMovesHistory();
+    }
+
+    /**
+     * Retrieves the game state controlled by this instance.
+     *
+     * @return The game state.
+     */
+    public GameState getGameState() {
+        return gameState;
+    }
+
+    /**
+     * Sets the opening book whose moves are suggested to the players.
+     *
+     * @param openingBook The opening book, or null for no suggestions.
+     */
+    public void setOpeningBook(OpeningBook openingBook) {
+        this.openingBook = openingBook;
+        notifyObservers();
+    }
+
+    /**
+     * Determines whether an opening book has been set.
+     *
+     * @return true if book moves can be suggested.
+     */
+    public boolean hasOpeningBook() {
+        return openingBook != null;
+    }
+
+    /**
+     * Retrieves the opening book moves of the current position, the most often played first.
+     *
+     * @param limit The maximum number of moves to return.
+     * @return The book moves with their game counts and scores, empty if there is no book, the
+     *         position is out of the book or the game is over.
+     */
+    public List<String> getBookSuggestions(int limit) {
+        if (openingBook == null || gameState.isGameEnded()) {
+            return List.of();
+        }
+        return openingBook.describe(gameState.getBitboards(), limit);
     }
 
     /**
@@ -122,7 +177,35 @@ public class GameController extends Subject implements Mouse.MouseClickHandler{
      * Coded by Mishal Mann Nair
      */
     public ArrayList<intPair> getMoves() {
-        return currentPiece.getMoves(gameState.getBoard());
+        return gameState.getValidMoves(currentPiece);
+    }
+
+    /**
+     * Writes the valid moves of the currently selected piece into a caller-owned buffer
+     * as packed ints (see Move). This is the allocation-free counterpart of getMoves.
+     *
+     * @param moves The buffer the packed moves are written to, starting at index 0.
+     * @return The number of moves written, or 0 if no piece is selected.
+     */
+    public int generateMoves(int[] moves) {
+        if (currentPiece == null) {
+            return 0;
+        }
+        return gameState.generateMoves(currentPiece, moves);
+    }
+
+    /**
+     * Writes only the captures of the currently selected piece into a caller-owned buffer as
+     * packed ints (see Move). Each capture carries the type of the piece it takes.
+     *
+     * @param moves The buffer the packed moves are written to, starting at index 0.
+     * @return The number of captures written, or 0 if no piece is selected.
+     */
+    public int generateCaptures(int[] moves) {
+        if (currentPiece == null) {
+            return 0;
+        }
+        return gameState.generateCaptures(currentPiece, moves);
     }
 
     /**
@@ -174,8 +257,9 @@ public class GameController extends Subject implements Mouse.MouseClickHandler{
      * Coded by Mishal Mann Nair
      */
     public void movePiece(Piece currentPiece, Tile destination) {
+        String notation = notation(currentPiece, destination, BitboardPosition.NO_PIECE);
         gameState.movePiece(currentPiece, destination);
-        gameState.addMoveToHistory(currentPiece.getName() + " " + displayX(destination.getCol()) + displayY(destination.getRow()));
+        gameState.addMoveToHistory(notation);
         notifyObservers();
     }
 
@@ -191,12 +275,13 @@ public class GameController extends Subject implements Mouse.MouseClickHandler{
      */
     public void capturePiece(Piece currentPiece, Tile destination) {
         Piece capturedPiece = gameState.getPiece(destination.getCol(), destination.getRow());
+        String notation = notation(currentPiece, destination, BitboardPosition.typeOf(capturedPiece.getName()));
         gameState.capturePiece(currentPiece, destination);
-        gameState.addMoveToHistory(currentPiece.getName() + " x "  + displayX(destination.getCol()) + displayY(destination.getRow()));
+        gameState.addMoveToHistory(notation);
 
 
-        // Check if the captured piece is "Sau"
-        if (capturedPiece.getName().equals("Sau")) {
+        // Check if the captured piece was the opponent's Sau
+        if (!gameState.getBitboards().hasSau(BitboardPosition.sideOf(capturedPiece))) {
             gameState.setGameEnd(currentPiece.getOwnerName()); // Notify the game end
             notifyGameEnd();
             return;
@@ -277,6 +362,22 @@ public class GameController extends Subject implements Mouse.MouseClickHandler{
         return (row + 1);
     }
 
+    /**
+     * Writes a move in MoveNotation for the moves history, naming both the origin and the
+     * destination square so that the history can be replayed. It must be called before the
+     * piece is moved.
+     *
+     * @param piece The piece about to move.
+     * @param destination The tile the piece moves to.
+     * @param capturedType The type of the piece on the destination tile, or BitboardPosition.NO_PIECE.
+     * @return The history entry, for example "Ram A7-A6" or "Tor E8xE2".
+     */
+    private String notation(Piece piece, Tile destination, int capturedType) {
+        int from = BitboardPosition.square(piece.getCol(), piece.getRow());
+        int to = BitboardPosition.square(destination.getCol(), destination.getRow());
+        return MoveNotation.format(Move.encode(from, to, BitboardPosition.typeOf(piece.getName()), capturedType));
+    }
+
     /**
      * Determines whether it is the given player's turn to play in the game.
      * This method compares the name of the current player whose turn it
@@ -403,17 +504,27 @@ public class GameController extends Subject implements Mouse.MouseClickHandler{
     private void handleMoveToEmptyTile(int col, int row) {
 
         // Check if the move is valid
-        for (intPair validMove : gameState.getValidMoves(currentPiece)) {
-            if (col == validMove.getX() && row == validMove.getY()) {
-                Tile destinationTile = getTile(col, row);
-                movePiece(currentPiece, destinationTile);
-                currentPiece = null; // Deselect the current piece
-                return;
-            }
+        if (isValidDestination(currentPiece, col, row)) {
+            Tile destinationTile = getTile(col, row);
+            movePiece(currentPiece, destinationTile);
+            currentPiece = null; // Deselect the current piece
+            return;
         }
         System.out.println("Invalid Move.");
     }
 
+    // Helper method to check a destination against a piece's moves without allocating
+    private boolean isValidDestination(Piece piece, int col, int row) {
+        int destination = BitboardPosition.square(col, row);
+        int count = gameState.generateMoves(piece, moveBuffer);
+        for (int i = 0; i < count; i++) {
+            if (Move.to(moveBuffer[i]) == destination) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Handles the interactions when a player interacts with a tile that is occupied by another piece.
      * This private helper method determines the appropriate course of action based on the ownership
@@ -438,19 +549,47 @@ public class GameController extends Subject implements Mouse.MouseClickHandler{
         }
 
         // Case 4b: Attempting to capture an opponent's piece
-
-        for (intPair validMove : gameState.getValidMoves(currentPiece)) {
-            if (col == validMove.getX() && row == validMove.getY()) {
-                Tile destinationTile = getTile(col, row);
-                System.out.println("Captured Piece.");
-                capturePiece(currentPiece, destinationTile);
-                currentPiece = null; // Deselect the current piece
-                return;
-            }
+        if (isValidDestination(currentPiece, col, row)) {
+            Tile destinationTile = getTile(col, row);
+            System.out.println("Captured Piece.");
+            capturePiece(currentPiece, destinationTile);
+            currentPiece = null; // Deselect the current piece
+            return;
         }
         System.out.println("Invalid Capture Attempt.");
     }
 
+    /**
+     * Plays a move given by its origin and destination tiles, without going through piece selection.
+     * The move is checked exactly as a click on the board would be: the origin must hold a piece of
+     * the player whose turn it is and the destination must be one of that piece's moves. A move onto
+     * an opponent's piece captures it. Nothing is printed, so this is the entry point for headless
+     * callers such as the game server.
+     *
+     * @param fromCol The column of the piece to move.
+     * @param fromRow The row of the piece to move.
+     * @param toCol The column of the destination tile.
+     * @param toRow The row of the destination tile.
+     * @return true if the move was legal and has been played, false if it was rejected.
+     */
+    public boolean tryMove(int fromCol, int fromRow, int toCol, int toRow) {
+        if (gameState.isGameEnded() || !isValidTile(fromCol, fromRow) || !isValidTile(toCol, toRow)) {
+            return false;
+        }
+        Piece piece = getPiece(fromCol, fromRow);
+        if (piece == null || !isPlayerTurn(piece.getOwner()) || !isValidDestination(piece, toCol, toRow)) {
+            return false;
+        }
+        Tile destinationTile = getTile(toCol, toRow);
+        if (destinationTile.isOccupied()) {
+            capturePiece(piece, destinationTile);
+        } else {
+            movePiece(piece, destinationTile);
+        }
+        currentPiece = null;
+        return true;
+    }
+
     /**
      * Saves the current state of the game to a file.
      * This method delegates the task of saving the game board and relevant
@@ -476,6 +615,24 @@ public class GameController extends Subject implements Mouse.MouseClickHandler{
         notifyObservers();
     }
 
+    /**
+     * Takes back the last move played, restoring the board, the turn and the moves history,
+     * and clears the current selection so that the view redraws the earlier position.
+     */
+    public void undoMove() {
+        if (!gameState.canUndo()) {
+            System.out.println("Nothing to undo.");
+            return;
+        }
+        gameState.unmakeMove();
+        ArrayList<String> history = gameState.getMovesHistory();
+        if (!history.isEmpty()) {
+            history.remove(history.size() - 1);
+        }
+        currentPiece = null;
+        notifyObservers();
+    }
+
     /**
      * Restarts the current game by reinitializing the game state, resetting the timer,
      * and notifying all observers about the changes.
@@ -41,6 +41,8 @@ public class MenuController implements ActionListener {
             handleLoad();
         } else if (command.equals("Restart")) {
             handleRestart();
+        } else if (command.equals("Undo")) {
+            handleUndo();
         } else if (command.equals("Help")) {
             handleHelp();
         } else if (command.equals("Quit")) {
@@ -101,6 +103,15 @@ public class MenuController implements ActionListener {
         gameController.restartGame();
     }
 
+    /**
+     * Handles the logic for taking back the last move by delegating to the associated
+     * GameController instance, which restores the previous position and moves history.
+     */
+    private void handleUndo() {
+        System.out.println("Undoing the last move...");
+        gameController.undoMove();
+    }
+
     /**
      * The MenuController class is responsible for handling menu-related
      * actions and events within the application. It acts as a controller
@@ -0,0 +1,19 @@
+package controller;
+
+import model.SavedGame;
+
+/**
+ * A listener that SaveLoadManager notifies every time a game has been saved successfully, in
+ * either format, so that other stores such as a game archive can pick the game up as well.
+ *
+ * Listeners are called on the thread that saved the game, after the save file has been written.
+ */
+public interface SaveListener {
+    /**
+     * Called after a game has been saved.
+     *
+     * @param savedGame The game as it was saved, with its move log when one is known.
+     * @param filePath The path of the save file that was written.
+     */
+    void gameSaved(SavedGame savedGame, String filePath);
+}
@@ -3,7 +3,14 @@ package controller;
 import model.*;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
 
 /**
  * The SaveLoadManager class is responsible for managing the saving and loading
@@ -17,17 +24,57 @@ import java.util.ArrayList;
  * It forms a utility class that encapsulates the functionality required for persistent
  * storage and retrieval of the game state. SaveLoadManager can be considered as an
  * implementation of the "Data Access Object" design pattern for file-based storage.
+ *
+ * Besides the readable text format there is a compact, versioned binary format (".kwz") for
+ * archives holding very many games. All numbers are big-endian:
+ * 4 bytes   the magic "KWZB"
+ * 1 byte    the format version, currently 1
+ * 4 bytes   the turn count
+ * 1 byte    the current turn (0 for P1, 1 for P2)
+ * 1 byte    the number of pieces, followed by 2 bytes per piece: the square (row * 5 + col), then
+ *           the piece type in bits 0-2, the owner in bit 3 and, for Rams, whether the Ram travels
+ *           towards row 8 in bit 4
+ * 4 bytes   the number of moves in the move log, followed by 2 bytes per move as Move.compact
+ * 4 bytes   the CRC32 of all the bytes before it
+ * loadBoard recognises the format from the magic, so either kind of file can be loaded.
+ *
+ * Every successful save, in either format, is passed on to the registered SaveListeners.
  * Coded by Harrish Panicker
  */
 public class SaveLoadManager {
+    public static final byte[] BINARY_MAGIC = {'K', 'W', 'Z', 'B'};
+    public static final int BINARY_VERSION = 1;
+    public static final String BINARY_EXTENSION = ".kwz";
+
+    private static final List<SaveListener> saveListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registers a listener to be notified of every successful save.
+     *
+     * @param listener The listener to add.
+     */
+    public static void addSaveListener(SaveListener listener) {
+        saveListeners.add(listener);
+    }
+
+    /**
+     * Stops notifying a listener of saves.
+     *
+     * @param listener The listener to remove.
+     */
+    public static void removeSaveListener(SaveListener listener) {
+        saveListeners.remove(listener);
+    }
 
     /**
      * The SaveLoadManager class handles the functionality of saving and loading the game state,
      * and acts as a utility class for persistence in the game. It plays a helper role in managing
      * data for saving and restoring gameplay.
+     * The Ram directions are passed as the bitboard mask of descending Rams, since the
+     * bitboards are what turns a Ram around on the edge rows.
      * Coded by Harrish Panicker
      */
-    public static void saveBoard(ArrayList<Piece> boardPieces, int turnCount, int currentTurn, ArrayList<String> movesHistory, String fileName) {
+    public static void saveBoard(ArrayList<Piece> boardPieces, long descendingRams, int turnCount, int currentTurn, ArrayList<String> movesHistory, String fileName) {
         String directoryPath = "savefiles";
         File directory = new File(directoryPath);
 
@@ -39,28 +86,25 @@ public class SaveLoadManager {
         String filePath = directoryPath + "/" + fileName + ".txt";
         System.out.println("Saving file: " + filePath);
 
+        SavedGame savedGame;
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
-            writer.write("Current Board Pieces\n");
-            writer.write("---------------------\n");
-            for (Piece piece : boardPieces) {
-                int row = piece.getRow() + 1; // Rows are 1-indexed in the save file
-                char col = (char) (piece.getCol() + 'A'); // Convert column index to letter
-                writer.write(piece.getName() + " " + piece.getOwnerName() + " " + col + " " + row + "\n");
-            }
-
-            writer.write("\nTurn Count: " + turnCount + "\n");
-            writer.write("Current Turn: " + currentTurn + "\n");
-
-            writer.write("\nMove History\n");
-            writer.write("------------\n");
-            for (String move : movesHistory) {
-                writer.write(move + "\n");
+            int[] pieces = new int[boardPieces.size()];
+            for (int i = 0; i < pieces.length; i++) {
+                Piece piece = boardPieces.get(i);
+                int square = BitboardPosition.square(piece.getCol(), piece.getRow());
+                boolean descending = piece instanceof Ram && (descendingRams & (1L << square)) != 0;
+                pieces[i] = SavedGame.pieceCode(square,
+                        BitboardPosition.typeOf(piece.getName()), BitboardPosition.sideOf(piece), descending);
             }
+            savedGame = new SavedGame(pieces, turnCount, currentTurn, parseMoveLog(movesHistory), new ArrayList<>(movesHistory));
+            writeText(savedGame, writer);
 
             System.out.println("Game state saved successfully as " + filePath);
         } catch (IOException e) {
             System.out.println("Failed to save the document: " + e.getMessage());
+            return;
         }
+        notifySaved(savedGame, filePath);
     }
 
 
@@ -78,35 +122,102 @@ public class SaveLoadManager {
             return;
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            ArrayList<Piece> loadedPieces = new ArrayList<>();
-            ArrayList<String> loadedMoves = new ArrayList<>();
-            String line;
+        try {
+            SavedGame savedGame;
+            if (isBinarySave(file)) {
+                savedGame = decodeBinary(Files.readAllBytes(file.toPath()));
+            } else {
+                try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                    savedGame = parseText(reader);
+                }
+            }
+            savedGame.applyTo(gameState);
 
-            // Skip the first two lines (headers)
-            reader.readLine();
-            reader.readLine();
+            System.out.println("Game state loaded successfully from " + fileName + "!");
+        } catch (IOException e) {
+            System.out.println("Failed to load the document: " + e.getMessage());
+        }
+    }
 
+    /**
+     * Writes a saved game in the text format: the pieces, the turn counters and the moves history.
+     * The move log is not written; it is rebuilt from the moves history when the save is read.
+     *
+     * @param savedGame The game to write.
+     * @param writer The writer to write to. It is not closed.
+     * @throws IOException If writing fails.
+     */
+    public static void writeText(SavedGame savedGame, Writer writer) throws IOException {
+        writer.write("Current Board Pieces\n");
+        writer.write("---------------------\n");
+        for (int i = 0; i < savedGame.getPieceCount(); i++) {
+            int code = savedGame.getPiece(i);
+            int row = BitboardPosition.row(SavedGame.square(code)) + 1; // Rows are 1-indexed in the save file
+            char col = (char) (BitboardPosition.col(SavedGame.square(code)) + 'A'); // Convert column index to letter
+            writer.write(BitboardPosition.PIECE_NAMES[SavedGame.type(code)] + " "
+                    + (SavedGame.side(code) == 0 ? "P1" : "P2") + " " + col + " " + row + "\n");
+        }
+
+        writer.write("\nTurn Count: " + savedGame.getTurnCount() + "\n");
+        writer.write("Current Turn: " + savedGame.getCurrentTurn() + "\n");
+
+        writer.write("\nMove History\n");
+        writer.write("------------\n");
+        for (String move : savedGame.getMovesHistory()) {
+            writer.write(move + "\n");
+        }
+    }
+
+    /**
+     * Parses a game in the text format. Nothing but the reader is touched, so files can be parsed
+     * on any number of threads at once. Lines in the pieces section that do not describe a known
+     * piece are skipped, as they always have been.
+     *
+     * @param reader The reader positioned at the start of the save. It is not closed.
+     * @return The parsed game. Rams get the default direction of their owner, and the move log is
+     *         rebuilt from the moves history when every entry is in MoveNotation.
+     * @throws IOException If reading fails or the save is malformed.
+     */
+    public static SavedGame parseText(BufferedReader reader) throws IOException {
+        ArrayList<Integer> pieces = new ArrayList<>();
+        ArrayList<String> loadedMoves = new ArrayList<>();
+        long occupied = 0L;
+        String line;
+
+        // Skip the first two lines (headers)
+        reader.readLine();
+        reader.readLine();
+
+        try {
             // Read board pieces
             while ((line = reader.readLine()) != null && !line.startsWith("Turn Count:")) {
                 String[] parts = line.split(" ");
                 if (parts.length != 4) continue; // Ensure the line is valid
 
-                String name = parts[0];
-                String ownerName = parts[1];
+                int type = BitboardPosition.typeOf(parts[0]);
+                int side = parts[1].equals("P1") ? 0 : parts[1].equals("P2") ? 1 : -1;
                 int col = parts[2].charAt(0) - 'A'; // Convert column letter to index
                 int row = Integer.parseInt(parts[3]) - 1; // Convert 1-indexed row to 0-indexed
-
-                Player owner = gameState.getPlayer(ownerName); // Find the corresponding player
-                Piece piece = createPieceByName(name, col, row, owner);
-                if (piece != null) {
-                    loadedPieces.add(piece);
+                if (type == BitboardPosition.NO_PIECE) continue; // Unknown piece name
+                if (side < 0 || col < 0 || col >= BitboardPosition.COLUMNS || row < 0 || row >= BitboardPosition.ROWS
+                        || (occupied & (1L << BitboardPosition.square(col, row))) != 0) {
+                    throw new IOException("Invalid piece line: " + line);
                 }
+                occupied |= 1L << BitboardPosition.square(col, row);
+                // New Rams head away from their owner's side, as in the Ram constructor
+                pieces.add(SavedGame.pieceCode(BitboardPosition.square(col, row), type, side, side == 1));
+            }
+            if (line == null) {
+                throw new IOException("Missing turn count");
             }
 
             // Parse turn count and current turn
             int turnCount = Integer.parseInt(line.split(": ")[1]);
-            int currentTurn = Integer.parseInt(reader.readLine().split(": ")[1]);
+            String turnLine = reader.readLine();
+            if (turnLine == null) {
+                throw new IOException("Missing current turn");
+            }
+            int currentTurn = Integer.parseInt(turnLine.split(": ")[1]);
 
             // Skip the "Move History" header
             reader.readLine();
@@ -118,39 +229,212 @@ public class SaveLoadManager {
                 loadedMoves.add(line);
             }
 
-            // Update game state
-            GameState.pieces.clear();
-            GameState.pieces.addAll(loadedPieces);
-            gameState.setTurnCount(turnCount);
-            gameState.setCurrentTurn(currentTurn);
-            gameState.getMovesHistory().clear();
-            gameState.getMovesHistory().addAll(loadedMoves);
-
-            // Reset the board
-            Tile[][] board = gameState.getBoard();
-            for (int i = 0; i < gameState.columns; i++) {
-                for (int j = 0; j < gameState.rows; j++) {
-                    board[i][j].setPiece(null);
-                }
+            int[] codes = new int[pieces.size()];
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = pieces.get(i);
             }
-            for (Piece piece : loadedPieces) {
-                board[piece.getCol()][piece.getRow()].setPiece(piece);
+            return new SavedGame(codes, turnCount, currentTurn, parseMoveLog(loadedMoves), loadedMoves);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Malformed save: " + e.getMessage(), e);
+        }
+    }
+
+    private static void notifySaved(SavedGame savedGame, String filePath) {
+        for (SaveListener listener : saveListeners) {
+            listener.gameSaved(savedGame, filePath);
+        }
+    }
+
+    /**
+     * Rebuilds the move log of a text save from its moves history. This is only possible when
+     * every entry is in MoveNotation; saves written before the notation named origin squares get
+     * an empty move log, as before.
+     *
+     * @param movesHistory The moves history.
+     * @return The compact moves, or an empty array.
+     */
+    private static int[] parseMoveLog(ArrayList<String> movesHistory) {
+        int[] moves = new int[movesHistory.size()];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = MoveNotation.parse(movesHistory.get(i));
+            if (moves[i] == Move.NONE) {
+                return new int[0];
             }
+        }
+        return moves;
+    }
 
-            System.out.println("Game state loaded successfully from " + fileName + "!");
+    /**
+     * Saves the game in the binary format described above, as savefiles/fileName.kwz.
+     *
+     * @param gameState The game to save.
+     * @param fileName The name of the save, without directory or extension.
+     */
+    public static void saveBinaryBoard(GameState gameState, String fileName) {
+        File directory = new File("savefiles");
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+
+        String filePath = "savefiles/" + fileName + BINARY_EXTENSION;
+        SavedGame savedGame = SavedGame.of(gameState);
+        try (OutputStream out = new FileOutputStream(filePath)) {
+            out.write(encodeBinary(savedGame));
+            System.out.println("Game state saved successfully as " + filePath);
         } catch (IOException e) {
-            System.out.println("Failed to load the document: " + e.getMessage());
+            System.out.println("Failed to save the document: " + e.getMessage());
+            return;
+        }
+        notifySaved(savedGame, filePath);
+    }
+
+    /**
+     * Encodes a game in the binary format described above.
+     *
+     * @param gameState The game to encode.
+     * @return The encoded game, checksum included.
+     */
+    public static byte[] encodeBinary(GameState gameState) {
+        return encodeBinary(SavedGame.of(gameState));
+    }
+
+    /**
+     * Encodes a saved game in the binary format described above.
+     *
+     * @param savedGame The game to encode.
+     * @return The encoded game, checksum included.
+     */
+    public static byte[] encodeBinary(SavedGame savedGame) {
+        int pieceCount = savedGame.getPieceCount();
+        int moveCount = savedGame.getMoveCount();
+        ByteBuffer out = ByteBuffer.allocate(19 + 2 * pieceCount + 2 * moveCount);
+        out.put(BINARY_MAGIC);
+        out.put((byte) BINARY_VERSION);
+        out.putInt(savedGame.getTurnCount());
+        out.put((byte) savedGame.getCurrentTurn());
+        out.put((byte) pieceCount);
+        for (int i = 0; i < pieceCount; i++) {
+            int code = savedGame.getPiece(i);
+            out.put((byte) SavedGame.square(code));
+            out.put((byte) (code >>> 6));
+        }
+        out.putInt(moveCount);
+        for (int i = 0; i < moveCount; i++) {
+            out.putShort((short) savedGame.getMove(i));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(out.array(), 0, out.position());
+        out.putInt((int) crc.getValue());
+        return out.array();
+    }
+
+    /**
+     * Decodes a game in the binary format described above into a game state, replacing its
+     * pieces, board, turn counters, move log and moves history. The game state is only changed
+     * once the whole file has been checked.
+     *
+     * @param data The encoded game.
+     * @param gameState The game state to load into.
+     * @throws IOException If the data is not a valid binary save.
+     */
+    public static void decodeBinary(byte[] data, GameState gameState) throws IOException {
+        decodeBinary(data).applyTo(gameState);
+    }
+
+    /**
+     * Decodes a game in the binary format described above.
+     *
+     * @param data The encoded game.
+     * @return The decoded game, with the moves history rebuilt from the move log.
+     * @throws IOException If the data is not a valid binary save.
+     */
+    public static SavedGame decodeBinary(byte[] data) throws IOException {
+        return decodeBinary(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Decodes a game in the binary format described above, reading it in place, for example
+     * straight out of a memory-mapped archive. The buffer's position is not changed.
+     *
+     * @param data The encoded game, from the buffer's position to its limit.
+     * @return The decoded game, with the moves history rebuilt from the move log.
+     * @throws IOException If the data is not a valid binary save.
+     */
+    public static SavedGame decodeBinary(ByteBuffer data) throws IOException {
+        ByteBuffer in = data.slice().order(ByteOrder.BIG_ENDIAN);
+        int length = in.remaining();
+        if (length < 19) {
+            throw new IOException("Truncated binary save");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(in.duplicate().limit(length - 4));
+        if (in.getInt(length - 4) != (int) crc.getValue()) {
+            throw new IOException("Checksum mismatch");
+        }
+        in.limit(length - 4);
+
+        for (byte b : BINARY_MAGIC) {
+            if (in.get() != b) {
+                throw new IOException("Not a binary save");
+            }
+        }
+        int version = in.get() & 0xFF;
+        if (version != BINARY_VERSION) {
+            throw new IOException("Unsupported binary save version " + version);
+        }
+        int turnCount = in.getInt();
+        int currentTurn = in.get() & 0xFF;
+        if (turnCount < 1 || currentTurn > 1) {
+            throw new IOException("Invalid turn counters");
         }
+
+        int pieceCount = in.get() & 0xFF;
+        if (in.remaining() < 2 * pieceCount + 4) {
+            throw new IOException("Truncated piece list");
+        }
+        int[] pieces = new int[pieceCount];
+        long occupied = 0L;
+        for (int i = 0; i < pieceCount; i++) {
+            int square = in.get() & 0xFF;
+            int flags = in.get() & 0xFF;
+            if (square >= BitboardPosition.SQUARES || (flags & 7) >= BitboardPosition.PIECE_TYPES
+                    || (occupied & (1L << square)) != 0) {
+                throw new IOException("Invalid piece entry " + i);
+            }
+            occupied |= 1L << square;
+            pieces[i] = square | (flags & 0x1F) << 6;
+        }
+
+        int moveCount = in.getInt();
+        if (moveCount < 0 || moveCount != in.remaining() / 2 || in.remaining() % 2 != 0) {
+            throw new IOException("Invalid move count");
+        }
+        int[] moves = new int[moveCount];
+        ArrayList<String> history = new ArrayList<>(moveCount);
+        for (int i = 0; i < moveCount; i++) {
+            int move = in.getShort() & 0xFFFF;
+            if (Move.from(move) >= BitboardPosition.SQUARES || Move.to(move) >= BitboardPosition.SQUARES
+                    || Move.piece(move) >= BitboardPosition.PIECE_TYPES) {
+                throw new IOException("Invalid move " + i);
+            }
+            moves[i] = move;
+            history.add(MoveNotation.format(move));
+        }
+        return new SavedGame(pieces, turnCount, currentTurn, moves, history);
     }
 
-    private static Piece createPieceByName(String name, int col, int row, Player owner) {
-        return switch (name) {
-            case "Ram" -> new Ram(col, row, owner);
-            case "Biz" -> new Biz(col, row, owner);
-            case "Sau" -> new Sau(col, row, owner);
-            case "Xor" -> new Xor(col, row, owner);
-            case "Tor" -> new Tor(col, row, owner);
-            default -> null; // Unknown piece name
-        };
+    /**
+     * Determines whether a file is a binary save by looking at its first bytes.
+     *
+     * @param file The file to check.
+     * @return true if the file starts with the binary magic.
+     */
+    public static boolean isBinarySave(File file) {
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] magic = in.readNBytes(BINARY_MAGIC.length);
+            return Arrays.equals(magic, BINARY_MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
     }
 }
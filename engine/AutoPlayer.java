@@ -0,0 +1,43 @@
+package engine;
+
+import model.BitboardPosition;
+
+/**
+ * A player that chooses its moves without a human, so that games can be played headless, for
+ * example by a Tournament.
+ *
+ * An AutoPlayer is used by one thread at a time. A player may keep state between moves, such as
+ * a transposition table, and is told when a new game starts so that it can reset it. Players
+ * holding threads or other resources release them in close.
+ */
+public interface AutoPlayer extends AutoCloseable {
+    /**
+     * Retrieves the name of the player, as used in tournament results.
+     *
+     * @return The name.
+     */
+    String getName();
+
+    /**
+     * Chooses a move for the side to move. The position must be left as it was passed in.
+     *
+     * @param position The position, with at least one legal move for the side to move.
+     * @param timeLimitMillis The time the player may think for in milliseconds, or 0 if the game
+     *                        is played without a clock and the player should use its own limit.
+     * @return The chosen move as a packed move (see model.Move).
+     */
+    int chooseMove(BitboardPosition position, long timeLimitMillis);
+
+    /**
+     * Tells the player that a new game is about to start.
+     */
+    default void newGame() {
+    }
+
+    /**
+     * Releases any resources held by the player.
+     */
+    @Override
+    default void close() {
+    }
+}
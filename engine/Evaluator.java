@@ -0,0 +1,21 @@
+package engine;
+
+import model.BitboardPosition;
+
+/**
+ * Scores a position for the search. Implementations are plugged into Search, so different
+ * evaluation functions can be compared without touching the search itself.
+ *
+ * Scores are in centi-Ram units (a Ram is worth roughly 100) and are always given from the
+ * point of view of the side to move: positive means the side to move is better off.
+ * Implementations must not change the position.
+ */
+public interface Evaluator {
+    /**
+     * Scores a position from the point of view of the side to move.
+     *
+     * @param position The position to score. Both Saus are on the board.
+     * @return The score, positive if the side to move is better off.
+     */
+    int evaluate(BitboardPosition position);
+}
@@ -0,0 +1,29 @@
+package engine;
+
+import model.BitboardPosition;
+import model.PieceSquareTables;
+
+/**
+ * The plain evaluation: the material balance, counted from the bitboards, with the values of
+ * PieceSquareTables.PIECE_VALUES and no square bonuses. MonteCarloSearch uses it to judge
+ * playouts that are cut off.
+ *
+ * The Sau has no material value because losing it ends the game, which the search
+ * scores separately. The Tor is valued above the Xor because orthogonal lines are longer than
+ * diagonal ones on the narrow 5x8 board, although every piece swaps between the two every
+ * second turn.
+ */
+public class MaterialEvaluator implements Evaluator {
+    public static final int[] PIECE_VALUES = PieceSquareTables.PIECE_VALUES;
+
+    @Override
+    public int evaluate(BitboardPosition position) {
+        int side = position.getSideToMove();
+        int score = 0;
+        for (int type = 0; type < BitboardPosition.PIECE_TYPES; type++) {
+            score += PIECE_VALUES[type] * (Long.bitCount(position.pieces(side, type))
+                    - Long.bitCount(position.pieces(side ^ 1, type)));
+        }
+        return score;
+    }
+}
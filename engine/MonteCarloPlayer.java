@@ -0,0 +1,56 @@
+package engine;
+
+import model.BitboardPosition;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * An AutoPlayer that plays the move found by a MonteCarloSearch. With a clock it runs playouts
+ * until its share of the time runs out; without one it runs a fixed number of playouts.
+ *
+ * Each player runs its playouts on a pool of its own, shut down by close.
+ */
+public class MonteCarloPlayer implements AutoPlayer {
+    public static final int TREE_NODES = 1 << 18;
+
+    private final ForkJoinPool pool;
+    private final MonteCarloSearch search;
+    private final long playouts;
+
+    /**
+     * Creates a player with its own playout threads.
+     *
+     * @param playouts The number of playouts per move when playing without a clock.
+     * @param threads The number of threads running playouts.
+     */
+    public MonteCarloPlayer(long playouts, int threads) {
+        this.pool = new ForkJoinPool(Math.max(1, threads));
+        this.search = new MonteCarloSearch(new MaterialEvaluator(), TREE_NODES, pool);
+        this.playouts = playouts;
+    }
+
+    @Override
+    public String getName() {
+        return "mcts:" + playouts;
+    }
+
+    /**
+     * Searches the position and returns the most visited move.
+     *
+     * @param position The position, with at least one legal move for the side to move.
+     * @param timeLimitMillis The time limit in milliseconds, or 0 to run the fixed number of playouts.
+     * @return The most visited move.
+     */
+    @Override
+    public int chooseMove(BitboardPosition position, long timeLimitMillis) {
+        return search.search(position, timeLimitMillis > 0 ? 0 : playouts, timeLimitMillis).getBestMove();
+    }
+
+    /**
+     * Shuts the playout threads down.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
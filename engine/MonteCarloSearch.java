@@ -0,0 +1,382 @@
+package engine;
+
+import model.BitboardPosition;
+import model.Move;
+import model.MoveGenerator;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A computer opponent based on Monte Carlo tree search instead of a hand-tuned evaluation: it
+ * plays many fast semi-random games (playouts) from the position and grows a tree towards the
+ * moves that win most often, choosing which branch to explore with the UCT formula.
+ *
+ * The tree is kept in primitive arrays indexed by node number rather than in node objects, and
+ * is allocated once for a fixed number of nodes. The children of a node occupy consecutive
+ * numbers, reserved in one step when the node is expanded. Once the tree is full, searching
+ * goes on with playouts from the existing leaves.
+ *
+ * Playouts run on a ForkJoinPool, all workers sharing one tree (tree parallelisation). Visit
+ * counts and results are atomic, so workers never lock. A worker passing through a node adds a
+ * virtual loss to it until its playout result comes back, which steers the other workers to
+ * different branches instead of all exploring the same one. A node is expanded by whichever
+ * worker claims it first; the others treat it as a leaf meanwhile.
+ *
+ * Playouts follow a light policy: a move that captures a Sau is always taken, otherwise a capture
+ * is preferred half of the time, and any other move is random. A playout ends when a Sau is
+ * captured, when the side to move has no move (a draw) or after MAX_PLAYOUT_PLIES, when the
+ * Evaluator decides who is ahead by more than CUTOFF_MARGIN. Results are counted in half points:
+ * 2 for a win, 1 for a draw and 0 for a loss.
+ */
+public class MonteCarloSearch {
+    public static final int DEFAULT_NODES = 1 << 20;
+    public static final int MAX_PLAYOUT_PLIES = 120;
+    public static final int CUTOFF_MARGIN = 150;
+    public static final double EXPLORATION = 1.4;
+    public static final int VIRTUAL_LOSS = 3;
+    public static final int EXPAND_VISITS = 2;
+
+    private static final int UNEXPANDED = 0;
+    private static final int EXPANDING = 1;
+    private static final int EXPANDED = 2;
+    private static final int MAX_TREE_DEPTH = 256;
+
+    private final Evaluator evaluator;
+    private final ForkJoinPool pool;
+    private final int parallelism;
+    private final int capacity;
+
+    // The tree: one slot per node, node 0 being the root
+    private final int[] moves;
+    private final int[] firstChild;
+    private final int[] childCount;
+    private final AtomicIntegerArray states;
+    private final AtomicIntegerArray visits;
+    private final AtomicIntegerArray virtualLosses;
+    private final AtomicLongArray halfPoints;
+    private final AtomicInteger nodeCount = new AtomicInteger();
+
+    private final AtomicLong playouts = new AtomicLong();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private BitboardPosition root;
+    private long playoutLimit;
+    private long deadline;
+    private volatile boolean stopped;
+    // Set once a block of children no longer fits, so workers stop generating moves to expand
+    private volatile boolean treeFull;
+
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+
+        BitboardPosition[] positions = SearchBenchmark.benchmarkPositions();
+        System.out.println("threads  playouts/s   speed-up");
+        double baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads = Math.min(threads * 2, maxThreads)) {
+            MonteCarloSearch search = new MonteCarloSearch(new MaterialEvaluator(), DEFAULT_NODES, new ForkJoinPool(threads));
+            long total = 0;
+            long elapsed = 0;
+            for (BitboardPosition position : positions) {
+                SearchResult result = search.search(position, 0, millis);
+                total += result.getNodes();
+                elapsed += result.getTimeMillis();
+            }
+            search.pool.shutdown();
+            double perSecond = total * 1000.0 / Math.max(1, elapsed);
+            if (threads == 1) {
+                baseline = perSecond;
+            }
+            System.out.printf("%7d  %11.0f  %8.2fx%n", threads, perSecond, perSecond / baseline);
+            if (threads == maxThreads) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Creates a search with a tree of the given size, running its playouts on a pool.
+     *
+     * @param evaluator The evaluation used to decide playouts cut off at MAX_PLAYOUT_PLIES. It
+     *                  must be thread-safe.
+     * @param maxNodes The number of tree nodes to allocate.
+     * @param pool The pool to run playouts on; one worker is started per thread of the pool.
+     */
+    public MonteCarloSearch(Evaluator evaluator, int maxNodes, ForkJoinPool pool) {
+        this.evaluator = evaluator;
+        this.pool = pool;
+        this.parallelism = pool.getParallelism();
+        this.capacity = Math.max(2, maxNodes);
+        moves = new int[capacity];
+        firstChild = new int[capacity];
+        childCount = new int[capacity];
+        states = new AtomicIntegerArray(capacity);
+        visits = new AtomicIntegerArray(capacity);
+        virtualLosses = new AtomicIntegerArray(capacity);
+        halfPoints = new AtomicLongArray(capacity);
+    }
+
+    /**
+     * Creates a search with DEFAULT_NODES nodes and the material evaluation, running on
+     * the common ForkJoinPool.
+     */
+    public MonteCarloSearch() {
+        this(new MaterialEvaluator(), DEFAULT_NODES, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Searches a position until the playout limit or the time limit is reached, or stop is
+     * called. At least one of the limits must be set. The position is not modified. The tree
+     * is rebuilt from scratch on every call.
+     *
+     * @param position The position to search, with the side to move to play.
+     * @param maxPlayouts The number of playouts to run, or 0 for no limit.
+     * @param timeLimitMillis The time limit in milliseconds, or 0 for no limit.
+     * @return The most visited move, its win rate scaled from -1000 (always lost) to 1000
+     *         (always won) as the score, the deepest tree path as the depth and the number of
+     *         playouts as the node count.
+     */
+    public SearchResult search(BitboardPosition position, long maxPlayouts, long timeLimitMillis) {
+        if (maxPlayouts <= 0 && timeLimitMillis <= 0) {
+            throw new IllegalArgumentException("Set a playout limit or a time limit");
+        }
+        long start = System.nanoTime();
+        root = position.copy();
+        playoutLimit = maxPlayouts > 0 ? maxPlayouts : Long.MAX_VALUE;
+        deadline = timeLimitMillis > 0 ? start + timeLimitMillis * 1_000_000L : Long.MAX_VALUE;
+        stopped = false;
+        playouts.set(0);
+        maxDepth.set(0);
+        clearTree();
+
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            tasks[i] = pool.submit(new Worker());
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+
+        int best = -1;
+        for (int child = firstChild[0]; states.get(0) == EXPANDED && child < firstChild[0] + childCount[0]; child++) {
+            if (best < 0 || visits.get(child) > visits.get(best)) {
+                best = child;
+            }
+        }
+        long elapsed = (System.nanoTime() - start) / 1_000_000L;
+        if (best < 0) {
+            return new SearchResult(Move.NONE, 0, 0, playouts.get(), elapsed);
+        }
+        int score = visits.get(best) == 0 ? 0 : (int) (halfPoints.get(best) * 1000 / visits.get(best)) - 1000;
+        return new SearchResult(moves[best], score, maxDepth.get(), playouts.get(), elapsed);
+    }
+
+    /**
+     * Asks a running search to stop after the playouts in progress.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Retrieves the number of playouts run by the current or last search.
+     *
+     * @return The playout count.
+     */
+    public long getPlayouts() {
+        return playouts.get();
+    }
+
+    /**
+     * Retrieves the number of tree nodes in use by the current or last search.
+     *
+     * @return The node count, at most the number of nodes allocated.
+     */
+    public int getTreeSize() {
+        return nodeCount.get();
+    }
+
+    // Resets the nodes used by the previous search, leaving an unexpanded root
+    private void clearTree() {
+        int used = getTreeSize();
+        for (int node = 0; node < Math.max(1, used); node++) {
+            states.set(node, UNEXPANDED);
+            visits.set(node, 0);
+            virtualLosses.set(node, 0);
+            halfPoints.set(node, 0);
+        }
+        nodeCount.set(1);
+        treeFull = false;
+    }
+
+    // Picks the child of an expanded node with the highest UCT value, counting virtual losses
+    private int select(int node) {
+        int first = firstChild[node];
+        int end = first + childCount[node];
+        double logParent = Math.log(Math.max(1, visits.get(node) + virtualLosses.get(node)));
+        int best = first;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int child = first; child < end; child++) {
+            int n = visits.get(child) + virtualLosses.get(child);
+            if (n == 0) {
+                return child;
+            }
+            double value = halfPoints.get(child) / (2.0 * n) + EXPLORATION * Math.sqrt(logParent / n);
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * One worker thread: runs select, expand, playout and backpropagate until the search ends.
+     * Its board and buffers are its own, so only the tree is shared.
+     */
+    private class Worker implements Runnable {
+        private final BitboardPosition board = new BitboardPosition();
+        private final int[] buffer = new int[MoveGenerator.MAX_MOVES];
+        private final int[] path = new int[MAX_TREE_DEPTH + 2];
+
+        @Override
+        public void run() {
+            while (!stopped) {
+                if (playouts.getAndIncrement() >= playoutLimit) {
+                    // Uncount the claim that found the limit reached
+                    playouts.decrementAndGet();
+                    break;
+                }
+                iterate();
+                if (System.nanoTime() > deadline) {
+                    stopped = true;
+                }
+            }
+        }
+
+        private void iterate() {
+            board.copyFrom(root);
+            int rootSide = board.getSideToMove();
+            int node = 0;
+            int depth = 0;
+            path[0] = 0;
+            virtualLosses.addAndGet(0, VIRTUAL_LOSS);
+
+            // Selection: follow UCT down the expanded part of the tree
+            while (states.get(node) == EXPANDED && childCount[node] > 0 && depth < MAX_TREE_DEPTH
+                    && board.hasSau(0) && board.hasSau(1)) {
+                node = select(node);
+                board.makeMove(moves[node]);
+                path[++depth] = node;
+                virtualLosses.addAndGet(node, VIRTUAL_LOSS);
+            }
+
+            // Expansion: the first worker to reach a visited leaf adds its children
+            if (!treeFull && board.hasSau(0) && board.hasSau(1) && states.get(node) == UNEXPANDED && depth < MAX_TREE_DEPTH
+                    && (node == 0 || visits.get(node) >= EXPAND_VISITS) && states.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+                if (expand(node)) {
+                    if (childCount[node] > 0) {
+                        node = firstChild[node] + ThreadLocalRandom.current().nextInt(childCount[node]);
+                        board.makeMove(moves[node]);
+                        path[++depth] = node;
+                        virtualLosses.addAndGet(node, VIRTUAL_LOSS);
+                    }
+                } else {
+                    states.set(node, UNEXPANDED);
+                }
+            }
+            if (depth > maxDepth.get()) {
+                maxDepth.accumulateAndGet(depth, Math::max);
+            }
+
+            int winner = playout();
+
+            // Backpropagation: credit every node with the result of the player who moved into it
+            for (int d = depth; d >= 0; d--) {
+                int moved = rootSide ^ ((d - 1) & 1);
+                int points = winner < 0 ? 1 : winner == moved ? 2 : 0;
+                int n = path[d];
+                halfPoints.addAndGet(n, points);
+                visits.incrementAndGet(n);
+                virtualLosses.addAndGet(n, -VIRTUAL_LOSS);
+            }
+        }
+
+        // Reserves a block of nodes for the moves of the board and publishes them; false if the tree is full
+        private boolean expand(int node) {
+            int count = MoveGenerator.generate(board, buffer);
+            int first;
+            do {
+                first = nodeCount.get();
+                if (first + count > capacity) {
+                    treeFull = true;
+                    return false;
+                }
+            } while (!nodeCount.compareAndSet(first, first + count));
+            for (int i = 0; i < count; i++) {
+                int child = first + i;
+                moves[child] = buffer[i];
+                states.set(child, UNEXPANDED);
+                visits.set(child, 0);
+                virtualLosses.set(child, 0);
+                halfPoints.set(child, 0);
+            }
+            firstChild[node] = first;
+            childCount[node] = count;
+            // The volatile write publishes the children to workers that read EXPANDED
+            states.set(node, EXPANDED);
+            return true;
+        }
+
+        // Plays the board out with the light policy and returns the winning side, or -1 for a draw
+        private int playout() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int ply = 0; ply < MAX_PLAYOUT_PLIES; ply++) {
+                if (!board.hasSau(0)) {
+                    return 1;
+                }
+                if (!board.hasSau(1)) {
+                    return 0;
+                }
+                int count = MoveGenerator.generate(board, buffer);
+                if (count == 0) {
+                    return -1;
+                }
+                int captures = 0;
+                int move = Move.NONE;
+                for (int i = 0; i < count; i++) {
+                    int captured = Move.captured(buffer[i]);
+                    if (captured == BitboardPosition.SAU) {
+                        move = buffer[i];
+                        break;
+                    }
+                    if (captured != BitboardPosition.NO_PIECE) {
+                        // Gather the captures at the front of the buffer
+                        int swap = buffer[captures];
+                        buffer[captures++] = buffer[i];
+                        buffer[i] = swap;
+                    }
+                }
+                if (move == Move.NONE) {
+                    move = captures > 0 && random.nextBoolean()
+                            ? buffer[random.nextInt(captures)]
+                            : buffer[random.nextInt(count)];
+                }
+                board.makeMove(move);
+            }
+            if (!board.hasSau(0) || !board.hasSau(1)) {
+                return board.hasSau(0) ? 0 : 1;
+            }
+            int score = evaluator.evaluate(board);
+            if (Math.abs(score) <= CUTOFF_MARGIN) {
+                return -1;
+            }
+            return score > 0 ? board.getSideToMove() : board.getSideToMove() ^ 1;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package engine;
+
+import model.BitboardPosition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Searches one position on several threads at once using the Lazy SMP scheme.
+ *
+ * Every thread runs an ordinary iterative-deepening Search on its own copy of the position,
+ * and all of them share one TranspositionTable. The threads do not coordinate otherwise: they
+ * cooperate only through the entries they leave in the table, which lets each thread skip work
+ * another has already done. Odd helper threads search one ply deeper than asked, so that the
+ * threads spread out over different depths instead of racing down the same path.
+ *
+ * The calling thread runs the main search. When it finishes, the helpers are stopped and the
+ * deepest completed result is reported, preferring the main thread's on a tie.
+ */
+public class ParallelSearch {
+    private final int threads;
+    private final TranspositionTable table;
+    private final Search[] searches;
+    private final ExecutorService helpers;
+
+    /**
+     * Creates a parallel search with its own shared transposition table and helper threads.
+     *
+     * @param threads The total number of search threads, including the calling thread.
+     * @param tableMegabytes The size of the shared transposition table in megabytes.
+     * @param evaluator The evaluation function shared by all threads. It must be thread-safe.
+     */
+    public ParallelSearch(int threads, int tableMegabytes, Evaluator evaluator) {
+        this.threads = Math.max(1, threads);
+        this.table = new TranspositionTable(tableMegabytes);
+        this.searches = new Search[this.threads];
+        for (int i = 0; i < this.threads; i++) {
+            searches[i] = new Search(evaluator, table);
+        }
+        this.helpers = this.threads > 1 ? Executors.newFixedThreadPool(this.threads - 1, runnable -> {
+            Thread thread = new Thread(runnable, "kwazam-search-helper");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Searches a position with every thread. The position itself is not modified; each thread
+     * searches a copy.
+     *
+     * @param position The position to search.
+     * @param maxDepth The maximum depth in plies for the main thread.
+     * @param timeLimitMillis The time limit in milliseconds, or 0 for no limit.
+     * @return The deepest completed result, with the node count summed over all threads.
+     */
+    public SearchResult search(BitboardPosition position, int maxDepth, long timeLimitMillis) {
+        AtomicBoolean stopSignal = new AtomicBoolean(false);
+        List<Future<SearchResult>> futures = new ArrayList<>();
+        for (int i = 1; i < threads; i++) {
+            Search helper = searches[i];
+            BitboardPosition copy = position.copy();
+            int depth = maxDepth + (i & 1);
+            helper.setStopSignal(stopSignal);
+            futures.add(helpers.submit(() -> helper.search(copy, depth, timeLimitMillis)));
+        }
+
+        SearchResult best = searches[0].search(position.copy(), maxDepth, timeLimitMillis);
+        stopSignal.set(true);
+
+        long nodes = best.getNodes();
+        for (Future<SearchResult> future : futures) {
+            try {
+                SearchResult result = future.get();
+                nodes += result.getNodes();
+                if (result.getDepth() > best.getDepth() && result.getBestMove() != 0) {
+                    best = result;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                System.out.println("Search helper failed: " + e.getCause());
+            }
+        }
+        return new SearchResult(best.getBestMove(), best.getScore(), best.getDepth(), nodes, best.getTimeMillis());
+    }
+
+    /**
+     * Retrieves the number of search threads.
+     *
+     * @return The thread count, including the calling thread.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Retrieves the transposition table shared by all threads.
+     *
+     * @return The shared table.
+     */
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * Stops the helper threads. The search cannot be used afterwards.
+     */
+    public void shutdown() {
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+}
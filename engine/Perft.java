@@ -0,0 +1,105 @@
+package engine;
+
+import model.BitboardPosition;
+import model.GameState;
+import model.Move;
+import model.MoveGenerator;
+
+/**
+ * Counts the leaf nodes of the move tree to a fixed depth (perft), as a correctness check and
+ * throughput benchmark for move generation.
+ *
+ * Moves are played with BitboardPosition.makeMove, so the count includes the Xor/Tor
+ * transformation after every second full turn and Rams turning around on rows 1 and 8.
+ * A position where a Sau has just been captured is a finished game: it counts as a leaf and
+ * is not expanded further.
+ *
+ * Usage: java engine.Perft depth [saveFile]
+ * Without a save file the count starts from the initial setup of GameState.setPieces. With one,
+ * the file is loaded through SaveLoadManager first. The output lists the count below each move
+ * of the root position (divide), followed by the total and the nodes per second.
+ */
+public class Perft {
+    private final int[][] moveStack = new int[Search.MAX_PLY][MoveGenerator.MAX_MOVES];
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: java engine.Perft depth [saveFile]");
+            return;
+        }
+        int depth = Integer.parseInt(args[0]);
+        GameState gameState = new GameState();
+        if (args.length > 1) {
+            gameState.loadBoard(args[1]);
+        }
+        BitboardPosition position = gameState.getBitboards().copy();
+
+        Perft perft = new Perft();
+        long start = System.nanoTime();
+        long total = perft.divide(position, depth, true);
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println();
+        System.out.println("Depth " + depth + ": " + total + " nodes");
+        System.out.println("Time: " + elapsed / 1_000_000 + " ms, " + (long) (total * 1e9 / Math.max(1, elapsed)) + " nodes/s");
+    }
+
+    /**
+     * Counts the leaf nodes below a position.
+     *
+     * @param position The position to count from. It is left unchanged.
+     * @param depth The depth in plies, at most Search.MAX_PLY - 1. Depth 0 or below counts the
+     *              position itself.
+     * @return The number of positions at the given depth, counting finished games as leaves.
+     */
+    public long perft(BitboardPosition position, int depth) {
+        return count(position, depth, 0);
+    }
+
+    /**
+     * Counts the leaf nodes below each move of a position separately.
+     *
+     * @param position The position to count from. It is left unchanged.
+     * @param depth The depth in plies. At depth 0 or below there are no moves to divide by and
+     *              the position itself is the only leaf.
+     * @param print Whether to print the count below each root move.
+     * @return The total number of leaf nodes.
+     */
+    public long divide(BitboardPosition position, int depth, boolean print) {
+        if (depth <= 0) {
+            return 1;
+        }
+        int[] moves = moveStack[0];
+        int count = MoveGenerator.generate(position, moves);
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            position.makeMove(move);
+            long nodes = count(position, depth - 1, 1);
+            position.unmakeMove();
+            if (print) {
+                System.out.println(Move.toString(move) + ": " + nodes);
+            }
+            total += nodes;
+        }
+        return total;
+    }
+
+    private long count(BitboardPosition position, int depth, int ply) {
+        if (depth <= 0 || !position.hasSau(position.getSideToMove())) {
+            return 1;
+        }
+        int[] moves = moveStack[ply];
+        int count = MoveGenerator.generate(position, moves);
+        if (depth == 1) {
+            return count;
+        }
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            position.makeMove(moves[i]);
+            total += count(position, depth - 1, ply + 1);
+            position.unmakeMove();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,18 @@
+package engine;
+
+import model.BitboardPosition;
+
+/**
+ * The default evaluation of Search: material plus piece-square bonuses (see
+ * model.PieceSquareTables).
+ *
+ * The score is maintained incrementally by BitboardPosition as moves are made and taken back,
+ * including the Xor/Tor transformation, so evaluating a leaf is a field read instead of a scan of
+ * the board.
+ */
+public class PieceSquareEvaluator implements Evaluator {
+    @Override
+    public int evaluate(BitboardPosition position) {
+        return position.getSideToMove() == 0 ? position.getScore() : -position.getScore();
+    }
+}
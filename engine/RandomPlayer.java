@@ -0,0 +1,32 @@
+package engine;
+
+import model.BitboardPosition;
+import model.MoveGenerator;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The weakest possible AutoPlayer: it plays a uniformly random legal move. It serves as a
+ * baseline for tournaments and as a fast opponent for throughput tests.
+ */
+public class RandomPlayer implements AutoPlayer {
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+    @Override
+    public String getName() {
+        return "random";
+    }
+
+    /**
+     * Picks a random legal move, ignoring the time limit.
+     *
+     * @param position The position, with at least one legal move for the side to move.
+     * @param timeLimitMillis Not used.
+     * @return A random legal move.
+     */
+    @Override
+    public int chooseMove(BitboardPosition position, long timeLimitMillis) {
+        int count = MoveGenerator.generate(position, moves);
+        return moves[ThreadLocalRandom.current().nextInt(count)];
+    }
+}
@@ -0,0 +1,373 @@
+package engine;
+
+import archive.OpeningBook;
+import model.BitboardPosition;
+import model.Move;
+import model.MoveGenerator;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A headless computer opponent: iterative-deepening alpha-beta search in negamax form over a
+ * BitboardPosition, with a pluggable Evaluator.
+ *
+ * The search plays moves with BitboardPosition.makeMove and takes them back with unmakeMove,
+ * so it never touches GameState, Tile or Piece objects and does not depend on Swing. Move
+ * buffers are allocated once per Search, so searching allocates nothing per node. A Search is
+ * not thread-safe; give every thread its own instance and its own copy of the position.
+ *
+ * A side whose Sau has been captured has lost, which is scored as MATE minus the distance from
+ * the root so that faster wins are preferred. A side with no moves at all is scored as a draw.
+ *
+ * At the horizon the search does not evaluate straight away but goes on with captures only
+ * (quiescence search), so that a position is never judged in the middle of an exchange. Each side
+ * may stand pat on the evaluation instead of capturing, and captures that lose material by
+ * static exchange evaluation are skipped, except captures of the Sau. A side whose Sau is attacked
+ * may not stand pat, since the evaluation knows nothing of the threat; it searches all of its
+ * moves instead, so that quiet moves saving the Sau count too.
+ *
+ * Results are cached in a TranspositionTable, which supplies cutoffs and the first move to try
+ * when a position comes round again. A table can be shared by several searches.
+ *
+ * Given an OpeningBook, a search plays the book's best move without searching at all while the
+ * position is still in the book.
+ */
+public class Search {
+    public static final int MAX_PLY = 64;
+    public static final int MATE = 100_000;
+    public static final int INFINITY = 1_000_000;
+    public static final int DEFAULT_TABLE_MEGABYTES = 16;
+
+    private final Evaluator evaluator;
+    private final TranspositionTable table;
+    private final int[][] moveStack = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    private final int[][] orderStack = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    private final StaticExchange exchange = new StaticExchange();
+
+    private BitboardPosition position;
+    private long nodes;
+    private long deadline;
+    private volatile boolean stopped;
+    private AtomicBoolean stopSignal;
+    private int rootBestMove;
+    private int iterationBestMove;
+    private OpeningBook book;
+    private int bookMinGames;
+
+    /**
+     * Creates a search that scores leaf positions with the given evaluator and caches results
+     * in the given transposition table.
+     *
+     * @param evaluator The evaluation function used at the leaves of the search tree.
+     * @param table The transposition table, which may be shared with other searches.
+     */
+    public Search(Evaluator evaluator, TranspositionTable table) {
+        this.evaluator = evaluator;
+        this.table = table;
+    }
+
+    /**
+     * Creates a search that scores leaf positions with the given evaluator, with a private
+     * transposition table of DEFAULT_TABLE_MEGABYTES.
+     *
+     * @param evaluator The evaluation function used at the leaves of the search tree.
+     */
+    public Search(Evaluator evaluator) {
+        this(evaluator, new TranspositionTable(DEFAULT_TABLE_MEGABYTES));
+    }
+
+    /**
+     * Creates a search using the default piece-square evaluation.
+     */
+    public Search() {
+        this(new PieceSquareEvaluator());
+    }
+
+    /**
+     * Searches a position by iterative deepening until the depth limit is reached, the time limit
+     * runs out, a forced win is found or stop is called. The position is used as scratch space
+     * and is left exactly as it was passed in.
+     *
+     * @param position The position to search, with the side to move to play.
+     * @param maxDepth The maximum depth in plies, at most MAX_PLY - 1.
+     * @param timeLimitMillis The time limit in milliseconds, or 0 for no limit.
+     * @return The result of the deepest iteration that completed.
+     */
+    public SearchResult search(BitboardPosition position, int maxDepth, long timeLimitMillis) {
+        long start = System.nanoTime();
+        this.position = position;
+        this.nodes = 0;
+        this.stopped = false;
+        this.deadline = timeLimitMillis > 0 ? start + timeLimitMillis * 1_000_000L : Long.MAX_VALUE;
+        this.rootBestMove = Move.NONE;
+
+        if (book != null) {
+            int bookMove = book.bestMove(position, bookMinGames);
+            if (bookMove != Move.NONE) {
+                return new SearchResult(bookMove, 0, 0, 0, (System.nanoTime() - start) / 1_000_000L);
+            }
+        }
+
+        int bestMove = Move.NONE;
+        int bestScore = 0;
+        int completedDepth = 0;
+        maxDepth = Math.min(maxDepth, MAX_PLY - 1);
+
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            iterationBestMove = Move.NONE;
+            int score = negamax(depth, 0, -INFINITY, INFINITY);
+            if (stopped) {
+                break;
+            }
+            bestMove = iterationBestMove;
+            bestScore = score;
+            completedDepth = depth;
+            rootBestMove = bestMove;
+            if (Math.abs(score) >= MATE - MAX_PLY || bestMove == Move.NONE) {
+                break;
+            }
+        }
+
+        // Make sure a move comes back even if the very first iteration was interrupted
+        if (bestMove == Move.NONE && MoveGenerator.generate(position, moveStack[0]) > 0) {
+            bestMove = moveStack[0][0];
+        }
+        long elapsed = (System.nanoTime() - start) / 1_000_000L;
+        return new SearchResult(bestMove, bestScore, completedDepth, nodes, elapsed);
+    }
+
+    /**
+     * Asks a running search to stop as soon as possible. The result of the last completed
+     * iteration is returned by search.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Shares a stop flag with other searches. Once the flag is set every search watching it stops
+     * within about a thousand nodes, even if it had not yet started when the flag was raised.
+     *
+     * @param stopSignal The shared flag, or null to only honour stop and the time limit.
+     */
+    public void setStopSignal(AtomicBoolean stopSignal) {
+        this.stopSignal = stopSignal;
+    }
+
+    /**
+     * Lets the search play moves from an opening book instead of searching while the position is
+     * in the book. A result taken from the book has a depth and a node count of 0.
+     *
+     * @param book The opening book, or null to always search.
+     * @param minGames The number of archived games a book move needs to have been played in.
+     */
+    public void setOpeningBook(OpeningBook book, int minGames) {
+        this.book = book;
+        this.bookMinGames = minGames;
+    }
+
+    /**
+     * Retrieves the transposition table used by this search.
+     *
+     * @return The transposition table.
+     */
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * Retrieves the number of positions visited by the current or last search.
+     *
+     * @return The node count.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        if (depth == 0) {
+            return quiesce(ply, alpha, beta);
+        }
+        nodes++;
+        if ((nodes & 1023) == 0 && (System.nanoTime() > deadline || (stopSignal != null && stopSignal.get()))) {
+            stopped = true;
+        }
+        if (stopped) {
+            return 0;
+        }
+        if (!position.hasSau(position.getSideToMove())) {
+            return -MATE + ply;
+        }
+        if (ply >= MAX_PLY - 1) {
+            return evaluator.evaluate(position);
+        }
+
+        long key = position.getKey();
+        int hint = Move.NONE;
+        long entry = table.probe(key);
+        if (entry != 0) {
+            hint = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                        || (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+        if (ply == 0 && rootBestMove != Move.NONE) {
+            hint = rootBestMove;
+        }
+
+        int[] moves = moveStack[ply];
+        int count = MoveGenerator.generate(position, moves);
+        if (count == 0) {
+            return 0;
+        }
+        orderMoves(moves, orderStack[ply], count, hint);
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = Move.NONE;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            position.makeMove(move);
+            int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+            position.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (ply == 0) {
+                    iterationBestMove = move;
+                }
+            }
+            if (score > alpha) {
+                alpha = score;
+            }
+            if (alpha >= beta) {
+                break;
+            }
+        }
+
+        int bound = best <= originalAlpha ? TranspositionTable.UPPER_BOUND
+                : best >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+        table.store(key, bestMove, toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    // Plays captures only until the position is quiet, letting the side to move stand pat unless its Sau is attacked
+    private int quiesce(int ply, int alpha, int beta) {
+        nodes++;
+        if ((nodes & 1023) == 0 && (System.nanoTime() > deadline || (stopSignal != null && stopSignal.get()))) {
+            stopped = true;
+        }
+        if (stopped) {
+            return 0;
+        }
+        if (!position.hasSau(position.getSideToMove())) {
+            return -MATE + ply;
+        }
+        if (ply >= MAX_PLY - 1) {
+            return evaluator.evaluate(position);
+        }
+
+        int side = position.getSideToMove();
+        int sau = Long.numberOfTrailingZeros(position.pieces(side, BitboardPosition.SAU));
+        boolean threatened = (MoveGenerator.attackersTo(position, sau, position.occupancy())
+                & position.occupancy(side ^ 1)) != 0;
+        int[] moves = moveStack[ply];
+        int count;
+        int best;
+        if (threatened) {
+            count = MoveGenerator.generate(position, moves);
+            if (count == 0) {
+                return 0;
+            }
+            orderMoves(moves, orderStack[ply], count, Move.NONE);
+            best = -INFINITY;
+        } else {
+            best = evaluator.evaluate(position);
+            if (best >= beta) {
+                return best;
+            }
+            if (best > alpha) {
+                alpha = best;
+            }
+            count = MoveGenerator.generateCaptures(position, moves);
+        }
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            if (!threatened && Move.captured(move) != BitboardPosition.SAU && exchange.evaluate(position, move) < 0) {
+                continue;
+            }
+            position.makeMove(move);
+            int score = -quiesce(ply + 1, -beta, -alpha);
+            position.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+            }
+            if (score > alpha) {
+                alpha = score;
+            }
+            if (alpha >= beta) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    // Mate scores are stored relative to the position rather than to the root
+    private static int toTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score + ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score - ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    // Sorts the hint move first, then captures by most valuable victim and least valuable attacker
+    private static void orderMoves(int[] moves, int[] keys, int count, int hint) {
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            int key = 0;
+            if (move == hint) {
+                key = Integer.MAX_VALUE;
+            } else {
+                key = MoveGenerator.captureOrder(move);
+            }
+            keys[i] = key;
+        }
+        for (int i = 1; i < count; i++) {
+            int move = moves[i];
+            int key = keys[i];
+            int j = i - 1;
+            while (j >= 0 && keys[j] < key) {
+                moves[j + 1] = moves[j];
+                keys[j + 1] = keys[j];
+                j--;
+            }
+            moves[j + 1] = move;
+            keys[j + 1] = key;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package engine;
+
+import model.BitboardPosition;
+import model.GameState;
+import model.MoveGenerator;
+
+import java.util.Random;
+
+/**
+ * Measures how the parallel search scales with the number of threads.
+ *
+ * For each thread count from 1 up to the maximum (doubling each time, plus the maximum itself)
+ * the benchmark searches a fixed set of positions for a fixed time and prints the total
+ * nodes per second and the speed-up over a single thread. The positions are the starting
+ * position and a few positions reached from it by a seeded random walk, so runs are repeatable.
+ * A single-threaded pass that is not reported runs first, so the JIT has compiled the search
+ * before the baseline is measured. Each thread count is timed on the wall clock around all its
+ * searches, which also counts the time spent starting and stopping the helper threads.
+ *
+ * Usage: java engine.SearchBenchmark [maxThreads] [millisPerPosition] [tableMegabytes]
+ */
+public class SearchBenchmark {
+    private static final int POSITIONS = 4;
+    private static final int RANDOM_PLIES = 12;
+
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+        int megabytes = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+
+        BitboardPosition[] positions = benchmarkPositions();
+        measure(positions, 1, megabytes, millis);
+        System.out.println("threads  nodes/s      speed-up");
+        double baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads = nextThreadCount(threads, maxThreads)) {
+            double nodesPerSecond = measure(positions, threads, megabytes, millis);
+            if (threads == 1) {
+                baseline = nodesPerSecond;
+            }
+            System.out.printf("%7d  %11.0f  %8.2fx%n", threads, nodesPerSecond, nodesPerSecond / baseline);
+            if (threads == maxThreads) {
+                break;
+            }
+        }
+    }
+
+    // Searches every position with the given number of threads and returns the nodes per wall-clock second
+    private static double measure(BitboardPosition[] positions, int threads, int megabytes, long millis) {
+        ParallelSearch search = new ParallelSearch(threads, megabytes, new MaterialEvaluator());
+        long nodes = 0;
+        long start = System.nanoTime();
+        for (BitboardPosition position : positions) {
+            search.getTable().clear();
+            nodes += search.search(position, Search.MAX_PLY - 2, millis).getNodes();
+        }
+        long elapsed = System.nanoTime() - start;
+        search.shutdown();
+        return nodes * 1e9 / Math.max(1, elapsed);
+    }
+
+    private static int nextThreadCount(int threads, int maxThreads) {
+        return Math.min(threads * 2, maxThreads);
+    }
+
+    static BitboardPosition[] benchmarkPositions() {
+        BitboardPosition start = new GameState().getBitboards();
+        BitboardPosition[] positions = new BitboardPosition[POSITIONS];
+        positions[0] = start.copy();
+        Random random = new Random(20241015L);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (int i = 1; i < POSITIONS; i++) {
+            BitboardPosition position = start.copy();
+            for (int ply = 0; ply < RANDOM_PLIES * i; ply++) {
+                int count = MoveGenerator.generate(position, moves);
+                if (count == 0) {
+                    break;
+                }
+                position.makeMove(moves[random.nextInt(count)]);
+                if (!position.hasSau(0) || !position.hasSau(1)) {
+                    position.unmakeMove();
+                    break;
+                }
+            }
+            positions[i] = position.copy();
+        }
+        return positions;
+    }
+}
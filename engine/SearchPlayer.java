@@ -0,0 +1,48 @@
+package engine;
+
+import model.BitboardPosition;
+
+/**
+ * An AutoPlayer that plays the move found by an alpha-beta Search. With a clock it deepens
+ * until its share of the time runs out; without one it searches to a fixed depth.
+ */
+public class SearchPlayer implements AutoPlayer {
+    private final Search search;
+    private final int maxDepth;
+
+    /**
+     * Creates a player searching with the default piece-square evaluation and a private
+     * transposition table.
+     *
+     * @param maxDepth The maximum search depth in plies.
+     */
+    public SearchPlayer(int maxDepth) {
+        this.search = new Search();
+        this.maxDepth = maxDepth;
+    }
+
+    @Override
+    public String getName() {
+        return "alphabeta:" + maxDepth;
+    }
+
+    /**
+     * Searches the position and returns the best move found.
+     *
+     * @param position The position, with at least one legal move for the side to move.
+     * @param timeLimitMillis The time limit in milliseconds, or 0 to search to the maximum depth.
+     * @return The best move found.
+     */
+    @Override
+    public int chooseMove(BitboardPosition position, long timeLimitMillis) {
+        return search.search(position, maxDepth, timeLimitMillis).getBestMove();
+    }
+
+    /**
+     * Clears the transposition table, so games do not depend on the ones played before.
+     */
+    @Override
+    public void newGame() {
+        search.getTable().clear();
+    }
+}
@@ -0,0 +1,80 @@
+package engine;
+
+import model.Move;
+
+/**
+ * The outcome of a search: the best move found, its score and how much work it took.
+ */
+public class SearchResult {
+    private final int bestMove;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final long timeMillis;
+
+    /**
+     * Creates a search result.
+     *
+     * @param bestMove The best move found, packed as in Move, or Move.NONE if there was no move.
+     * @param score The score of the best move from the point of view of the side to move.
+     * @param depth The deepest iteration that was completed.
+     * @param nodes The number of positions visited.
+     * @param timeMillis The time the search took in milliseconds.
+     */
+    public SearchResult(int bestMove, int score, int depth, long nodes, long timeMillis) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.timeMillis = timeMillis;
+    }
+
+    /**
+     * @return The best move found, packed as in Move, or Move.NONE if the side to move had no move.
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * @return The score of the best move from the point of view of the side to move.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * @return The deepest iteration that was completed.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return The number of positions visited.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return The time the search took in milliseconds.
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * @return The search speed in positions per second.
+     */
+    public long getNodesPerSecond() {
+        return nodes * 1000 / Math.max(1, timeMillis);
+    }
+
+    @Override
+    public String toString() {
+        String move = bestMove == Move.NONE ? "none" : Move.toString(bestMove);
+        return "depth " + depth + " score " + score + " move " + move + " nodes " + nodes
+                + " time " + timeMillis + "ms nps " + getNodesPerSecond();
+    }
+}
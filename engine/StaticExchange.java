@@ -0,0 +1,90 @@
+package engine;
+
+import model.BitboardPosition;
+import model.Move;
+import model.MoveGenerator;
+import model.PieceSquareTables;
+
+/**
+ * Static exchange evaluation: the material a capture wins or loses once every capture back and
+ * forth on the destination square has been played out, each side always recapturing with its
+ * least valuable piece and free to stop whenever going on would cost it.
+ *
+ * The exchange is worked out on the bitboards without making any moves. Pieces behind the
+ * capturers join in as the squares in front of them empty, so lines of Tors or Xors are counted
+ * properly. The Xor/Tor transformation that may happen during a long exchange is ignored, and a
+ * Sau may take part but ends the exchange when it is captured. An instance owns its working
+ * buffer, so evaluating allocates nothing; give every thread its own instance.
+ */
+public class StaticExchange {
+    /** The value of a Sau in an exchange, far above everything else on the board together. */
+    public static final int SAU_VALUE = 10_000;
+
+    private static final int[] VALUES = new int[BitboardPosition.PIECE_TYPES];
+    // Piece types from least to most valuable, the order recaptures are tried in
+    private static final int[] CHEAPEST_FIRST = {
+            BitboardPosition.RAM, BitboardPosition.BIZ, BitboardPosition.XOR, BitboardPosition.TOR, BitboardPosition.SAU
+    };
+
+    private final int[] gain = new int[2 * BitboardPosition.SQUARES];
+
+    static {
+        for (int type = 0; type < BitboardPosition.PIECE_TYPES; type++) {
+            VALUES[type] = PieceSquareTables.PIECE_VALUES[type];
+        }
+        VALUES[BitboardPosition.SAU] = SAU_VALUE;
+    }
+
+    /**
+     * Evaluates the exchange started by a move.
+     *
+     * @param position The position, with the move's piece on its origin square. It is not changed.
+     * @param move A packed move; for a quiet move the result is what the moved piece risks.
+     * @return The material balance of the exchange for the side making the move, in the units
+     *         of PieceSquareTables.PIECE_VALUES with a Sau worth SAU_VALUE.
+     */
+    public int evaluate(BitboardPosition position, int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int depth = 0;
+        gain[0] = Move.isCapture(move) ? VALUES[Move.captured(move)] : 0;
+        if (Move.captured(move) == BitboardPosition.SAU) {
+            return gain[0];
+        }
+
+        int onSquare = Move.piece(move);
+        int side = position.ownerAt(from) ^ 1;
+        long occupied = position.occupancy() & ~(1L << from);
+        long attackers = MoveGenerator.attackersTo(position, to, occupied);
+        while (depth < gain.length - 1) {
+            long own = attackers & position.occupancy(side);
+            int type = BitboardPosition.NO_PIECE;
+            long attacker = 0;
+            for (int candidate : CHEAPEST_FIRST) {
+                attacker = own & position.pieces(side, candidate);
+                if (attacker != 0) {
+                    type = candidate;
+                    break;
+                }
+            }
+            if (type == BitboardPosition.NO_PIECE) {
+                break;
+            }
+            depth++;
+            gain[depth] = VALUES[onSquare] - gain[depth - 1];
+            // Capturing the Sau ends the game, and with it the exchange
+            if (onSquare == BitboardPosition.SAU) {
+                break;
+            }
+            occupied &= ~Long.lowestOneBit(attacker);
+            attackers = MoveGenerator.attackersTo(position, to, occupied);
+            onSquare = type;
+            side ^= 1;
+        }
+        while (depth > 0) {
+            gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+            depth--;
+        }
+        return gain[0];
+    }
+}
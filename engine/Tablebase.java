@@ -0,0 +1,327 @@
+package engine;
+
+import model.BitboardPosition;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Probes endgame tablebases written by TablebaseBuilder: for every position with few pieces
+ * left, whether the side to move wins, loses or draws with best play, and in how many plies the
+ * losing Sau is captured.
+ *
+ * There is one table per material signature, the number of pieces of each type and side besides
+ * the two Saus, which every table position has. A table is a file in the tablebase directory,
+ * named after its signature (see name), that is mapped read-only when first probed. After a
+ * 24-byte header (the magic "KTBL", the signature, the bits per entry, the largest distance and
+ * the number of entries) the entries follow, packed into big-endian longs at bitsPerEntry bits
+ * each, lowest bits first.
+ *
+ * An entry holds the distance in plies to the capture of a Sau with best play, or 0 for a draw.
+ * The side to move makes the capture, and so wins, when the distance is odd, and loses when it is
+ * even. A side with no moves at all has drawn, as in Search.
+ *
+ * The index of a position is built from, most significant first:
+ * the squares of the pieces, in signature order: P1's then P2's, by type from Ram to Sau, and
+ * by square within a type, as base-40 digits;
+ * the direction of every Ram, one bit each in the same order;
+ * the phase, which is the side to move plus twice the parity of the turn counter.
+ * The phase decides when Xor and Tor next transform, so positions that differ only in the phase
+ * are different positions. The index is collision-free but not dense: slots where two pieces
+ * share a square, or where pieces of the same type are out of square order, are never used and
+ * hold 0.
+ */
+public class Tablebase {
+    public static final String EXTENSION = ".ktb";
+    public static final int NOT_FOUND = -1;
+    public static final int PHASES = 4;
+    public static final int HEADER_BYTES = 24;
+
+    static final int MAGIC = 'K' << 24 | 'T' << 16 | 'B' << 8 | 'L';
+    static final int FIELD_BITS = 3;
+    static final int FIELD_MASK = (1 << FIELD_BITS) - 1;
+    static final char[] TYPE_LETTERS = {'R', 'B', 'T', 'X', 'S'};
+
+    private final Path directory;
+    private final Map<Integer, Table> tables = new ConcurrentHashMap<>();
+
+    /**
+     * Opens a tablebase directory. Tables are mapped when they are first needed.
+     *
+     * @param directory The directory holding the table files.
+     */
+    public Tablebase(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Looks a position up.
+     *
+     * @param position The position, which must have both Saus.
+     * @return The distance in plies to the capture of a Sau (odd when the side to move wins, even
+     *         when it loses), 0 for a draw, or NOT_FOUND if there is no table for the material.
+     */
+    public int probe(BitboardPosition position) {
+        int signature = signature(position);
+        Table table = table(signature);
+        return table == null ? NOT_FOUND : table.get(index(position, signature));
+    }
+
+    /**
+     * Tells whether the directory has a table for a material signature.
+     *
+     * @param signature The signature, see signature.
+     * @return True if the table exists and can be mapped.
+     */
+    public boolean hasTable(int signature) {
+        return table(signature) != null;
+    }
+
+    /**
+     * Retrieves the largest distance stored in the table of a signature.
+     *
+     * @param signature The signature, see signature.
+     * @return The largest distance, or NOT_FOUND if there is no such table.
+     */
+    public int maxDistance(int signature) {
+        Table table = table(signature);
+        return table == null ? NOT_FOUND : table.maxDistance;
+    }
+
+    /**
+     * Drops what is known about the table of a signature, so that a table written since it was
+     * last looked for is mapped on the next probe.
+     *
+     * @param signature The signature, see signature.
+     */
+    void forget(int signature) {
+        tables.remove(signature);
+    }
+
+    // Maps a table on first use; a missing or damaged file is remembered as missing
+    private Table table(int signature) {
+        Table table = tables.computeIfAbsent(signature, key -> {
+            try {
+                return new Table(directory.resolve(name(key) + EXTENSION), key);
+            } catch (IOException e) {
+                return Table.MISSING;
+            }
+        });
+        return table == Table.MISSING ? null : table;
+    }
+
+    /**
+     * Computes the material signature of a position: the number of Rams, Bizes, Tors and Xors of
+     * each side, FIELD_BITS bits each, P1's Ram count lowest. Saus are not counted.
+     *
+     * @param position The position.
+     * @return The signature.
+     */
+    public static int signature(BitboardPosition position) {
+        int signature = 0;
+        for (int side = 0; side < 2; side++) {
+            for (int type = BitboardPosition.RAM; type < BitboardPosition.SAU; type++) {
+                signature |= Long.bitCount(position.pieces(side, type)) << shift(side, type);
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Retrieves the number of pieces of one type and side in a signature.
+     *
+     * @param signature The signature.
+     * @param side The side.
+     * @param type The piece type; Sau always counts 1.
+     * @return The number of pieces.
+     */
+    public static int count(int signature, int side, int type) {
+        return type == BitboardPosition.SAU ? 1 : (signature >>> shift(side, type)) & FIELD_MASK;
+    }
+
+    /**
+     * Retrieves the number of pieces on the board in positions of a signature, Saus included.
+     *
+     * @param signature The signature.
+     * @return The number of pieces.
+     */
+    public static int pieceCount(int signature) {
+        int count = 0;
+        for (int side = 0; side < 2; side++) {
+            for (int type = BitboardPosition.RAM; type <= BitboardPosition.SAU; type++) {
+                count += count(signature, side, type);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Retrieves the signature with every Tor turned into an Xor and every Xor into a Tor, which is
+     * where positions of a signature go when the pieces transform.
+     *
+     * @param signature The signature.
+     * @return The transformed signature.
+     */
+    public static int swapXorTor(int signature) {
+        int swapped = signature;
+        for (int side = 0; side < 2; side++) {
+            swapped &= ~(FIELD_MASK << shift(side, BitboardPosition.TOR) | FIELD_MASK << shift(side, BitboardPosition.XOR));
+            swapped |= count(signature, side, BitboardPosition.TOR) << shift(side, BitboardPosition.XOR);
+            swapped |= count(signature, side, BitboardPosition.XOR) << shift(side, BitboardPosition.TOR);
+        }
+        return swapped;
+    }
+
+    /**
+     * Names a signature by the letters of its pieces, P1's and then P2's, Sau first, for example
+     * "SRT-SB" for P1's Sau, Ram and Tor against P2's Sau and Biz.
+     *
+     * @param signature The signature.
+     * @return The name, also used as the file name of the table.
+     */
+    public static String name(int signature) {
+        StringBuilder name = new StringBuilder();
+        for (int side = 0; side < 2; side++) {
+            if (side == 1) {
+                name.append('-');
+            }
+            name.append(TYPE_LETTERS[BitboardPosition.SAU]);
+            for (int type = BitboardPosition.RAM; type < BitboardPosition.SAU; type++) {
+                for (int i = 0; i < count(signature, side, type); i++) {
+                    name.append(TYPE_LETTERS[type]);
+                }
+            }
+        }
+        return name.toString();
+    }
+
+    /**
+     * Retrieves the number of index slots of a signature.
+     *
+     * @param signature The signature.
+     * @return The number of slots.
+     */
+    public static long size(int signature) {
+        long size = PHASES;
+        for (int side = 0; side < 2; side++) {
+            size <<= count(signature, side, BitboardPosition.RAM);
+        }
+        for (int piece = 0; piece < pieceCount(signature); piece++) {
+            size *= BitboardPosition.SQUARES;
+        }
+        return size;
+    }
+
+    /**
+     * Computes the index of a position within the table of its signature.
+     *
+     * @param position The position.
+     * @param signature The signature of the position.
+     * @return The index, from 0 to size(signature).
+     */
+    public static long index(BitboardPosition position, int signature) {
+        long squares = 0;
+        long ramBits = 0;
+        int rams = 0;
+        long descending = position.getDescendingRams();
+        for (int side = 0; side < 2; side++) {
+            for (int type = BitboardPosition.RAM; type <= BitboardPosition.SAU; type++) {
+                long bits = position.pieces(side, type);
+                while (bits != 0) {
+                    int square = Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    squares = squares * BitboardPosition.SQUARES + square;
+                    if (type == BitboardPosition.RAM) {
+                        ramBits = ramBits << 1 | (descending >>> square & 1);
+                        rams++;
+                    }
+                }
+            }
+        }
+        return ((squares << rams | ramBits) * PHASES) + phase(position);
+    }
+
+    /**
+     * Computes the phase of a position: the side to move plus twice the parity of the turn
+     * counter. Together these decide after how many plies Xor and Tor transform.
+     *
+     * @param position The position.
+     * @return The phase, from 0 to PHASES - 1.
+     */
+    public static int phase(BitboardPosition position) {
+        return position.getSideToMove() | (position.getTurnCount() & 1) << 1;
+    }
+
+    private static int shift(int side, int type) {
+        return (side * BitboardPosition.SAU + type) * FIELD_BITS;
+    }
+
+    /**
+     * One mapped table file.
+     */
+    private static final class Table {
+        static final Table MISSING = new Table();
+
+        private final MappedByteBuffer entries;
+        private final int bits;
+        private final long mask;
+        private final int maxDistance;
+
+        private Table() {
+            entries = null;
+            bits = 0;
+            mask = 0;
+            maxDistance = 0;
+        }
+
+        Table(Path file, int signature) throws IOException {
+            if (!Files.exists(file)) {
+                throw new IOException("No table " + file);
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long length = channel.size();
+                if (length < HEADER_BYTES || length > Integer.MAX_VALUE) {
+                    throw new IOException("Not a tablebase file: " + file);
+                }
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                bits = mapped.getInt(8);
+                maxDistance = mapped.getInt(12);
+                long count = mapped.getLong(16);
+                if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != signature || bits < 1 || bits > 32
+                        || count != size(signature) || length != HEADER_BYTES + words(count, bits) * 8) {
+                    throw new IOException("Not a tablebase file: " + file);
+                }
+                entries = mapped;
+                mask = (1L << bits) - 1;
+            }
+        }
+
+        int get(long index) {
+            long bit = index * bits;
+            int word = (int) (bit >>> 6);
+            int offset = (int) (bit & 63);
+            long value = entries.getLong(HEADER_BYTES + word * 8) >>> offset;
+            if (offset + bits > 64) {
+                value |= entries.getLong(HEADER_BYTES + (word + 1) * 8) << (64 - offset);
+            }
+            return (int) (value & mask);
+        }
+    }
+
+    /**
+     * Retrieves the number of longs needed to pack a number of entries.
+     *
+     * @param entries The number of entries.
+     * @param bits The bits per entry.
+     * @return The number of longs.
+     */
+    static long words(long entries, int bits) {
+        return (entries * bits + 63) >>> 6;
+    }
+}
@@ -0,0 +1,438 @@
+package engine;
+
+import model.BitboardPosition;
+import model.Move;
+import model.MoveGenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Builds the endgame tables probed by Tablebase, for every material signature up to a number of
+ * pieces, by retrograde analysis.
+ *
+ * Tables are built from the fewest pieces up, since a capture leads into a table with one piece
+ * less that must already exist. A signature is built together with the signature that has its
+ * Tors and Xors swapped, because the transformation of those pieces moves positions back and forth
+ * between the two.
+ *
+ * Solving works in passes over the index. Pass n finds the positions whose distance to the
+ * capture of a Sau is n plies: the side to move wins in n if a move leads to a position lost in
+ * n - 1 (a Sau capture being a win in 1), and loses in n if every move leads to a position won by
+ * the opponent, the slowest in n - 1. Entries written during a pass are not read until the next
+ * one, so each pass can be split across threads without any locking and the result does not
+ * depend on the thread count. Positions still open once no pass can settle any more are draws,
+ * like positions where the side to move has no move at all. Before the tables are written, every
+ * win in n is checked to have a move into a loss in n - 1.
+ *
+ * Usage: java engine.TablebaseBuilder directory [maxPieces] [threads]
+ */
+public class TablebaseBuilder {
+    public static final int DEFAULT_MAX_PIECES = 3;
+
+    // Working values besides distances: not settled yet, and settled as a draw or an unused slot
+    private static final short OPEN = 0;
+    private static final short DRAWN = -1;
+    private static final int CHUNKS_PER_THREAD = 16;
+
+    private final Path directory;
+    private final Tablebase tablebase;
+    private final ExecutorService pool;
+    private final int threads;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java engine.TablebaseBuilder directory [maxPieces] [threads]");
+            return;
+        }
+        int maxPieces = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_PIECES;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        TablebaseBuilder builder = new TablebaseBuilder(Path.of(args[0]), threads);
+        try {
+            builder.buildAll(maxPieces);
+        } finally {
+            builder.shutdown();
+        }
+    }
+
+    /**
+     * Creates a builder writing into a directory, with its own worker threads.
+     *
+     * @param directory The tablebase directory, created if needed.
+     * @param threads The number of threads each pass is split across.
+     * @throws IOException If the directory cannot be created.
+     */
+    public TablebaseBuilder(Path directory, int threads) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.tablebase = new Tablebase(directory);
+        this.threads = Math.max(1, threads);
+        this.pool = Executors.newFixedThreadPool(this.threads, runnable -> {
+            Thread thread = new Thread(runnable, "kwazam-tablebase");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Builds every table with up to a number of pieces on the board, Saus included. Tables
+     * already in the directory are kept, so an interrupted build can be resumed.
+     *
+     * @param maxPieces The largest number of pieces, at least 2.
+     * @throws IOException If a table cannot be written.
+     */
+    public void buildAll(int maxPieces) throws IOException {
+        List<Integer> signatures = new ArrayList<>();
+        addSignatures(signatures, 0, 0, maxPieces - 2);
+        signatures.sort((a, b) -> Tablebase.pieceCount(a) != Tablebase.pieceCount(b)
+                ? Integer.compare(Tablebase.pieceCount(a), Tablebase.pieceCount(b)) : Integer.compare(a, b));
+        Set<Integer> done = new HashSet<>();
+        for (int signature : signatures) {
+            if (done.contains(signature)) {
+                continue;
+            }
+            done.add(signature);
+            done.add(Tablebase.swapXorTor(signature));
+            if (tablebase.hasTable(signature) && tablebase.hasTable(Tablebase.swapXorTor(signature))) {
+                continue;
+            }
+            build(signature);
+        }
+    }
+
+    /**
+     * Builds the table of a signature and of its Xor/Tor counterpart. The tables with one piece
+     * less must already exist.
+     *
+     * @param signature The material signature, see Tablebase.signature.
+     * @throws IOException If a table cannot be written.
+     * @throws IllegalStateException If a table with one piece less is missing.
+     * @throws IllegalArgumentException If the tables are too large to build in memory.
+     */
+    public void build(int signature) throws IOException {
+        long start = System.nanoTime();
+        int swapped = Tablebase.swapXorTor(signature);
+        Group group = new Group(swapped == signature ? new int[]{signature} : new int[]{signature, swapped});
+
+        // Nothing can be settled past the longest distance of the tables captures lead into
+        int dependencyDistance = 0;
+        for (int member : group.signatures) {
+            for (int side = 0; side < 2; side++) {
+                for (int type = BitboardPosition.RAM; type < BitboardPosition.SAU; type++) {
+                    if (Tablebase.count(member, side, type) == 0) {
+                        continue;
+                    }
+                    int smaller = member - (1 << (side * BitboardPosition.SAU + type) * Tablebase.FIELD_BITS);
+                    for (int dependency : new int[]{smaller, Tablebase.swapXorTor(smaller)}) {
+                        int distance = tablebase.maxDistance(dependency);
+                        if (distance == Tablebase.NOT_FOUND) {
+                            throw new IllegalStateException("Table " + Tablebase.name(dependency) + " must be built first");
+                        }
+                        dependencyDistance = Math.max(dependencyDistance, distance);
+                    }
+                }
+            }
+        }
+
+        int settled;
+        int pass = 0;
+        do {
+            pass++;
+            settled = runPass(group, pass);
+        } while (settled > 0 || pass <= dependencyDistance);
+        int inconsistent = runChunks(group, (from, to) -> check(group, from, to));
+        if (inconsistent > 0) {
+            throw new IllegalStateException(groupName(group) + ": " + inconsistent + " wins without a move into a loss");
+        }
+
+        for (int i = 0; i < group.signatures.length; i++) {
+            write(group, i);
+        }
+        System.out.printf("%s: %d positions, %d passes, %.2f s%n", groupName(group), group.values.length,
+                pass, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    // Splits one pass into chunks of the index and returns the number of positions it settled
+    private int runPass(Group group, int pass) throws IOException {
+        return runChunks(group, (from, to) -> solve(group, pass, from, to));
+    }
+
+    // Runs a task over chunks of the index in the worker threads and sums what the chunks return
+    private int runChunks(Group group, IntBinaryOperator task) throws IOException {
+        int length = group.values.length;
+        int chunks = threads * CHUNKS_PER_THREAD;
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int from = (int) ((long) length * chunk / chunks);
+            int to = (int) ((long) length * (chunk + 1) / chunks);
+            tasks.add(() -> task.applyAsInt(from, to));
+        }
+        int settled = 0;
+        try {
+            for (Future<Integer> result : pool.invokeAll(tasks)) {
+                settled += result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Tablebase build interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(e.getCause());
+        }
+        return settled;
+    }
+
+    // Tries to settle every open position of a range of the index in the given pass
+    private int solve(Group group, int pass, int from, int to) {
+        BitboardPosition board = new BitboardPosition();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        short[] values = group.values;
+        int settled = 0;
+        for (int i = from; i < to; i++) {
+            if (values[i] != OPEN) {
+                continue;
+            }
+            int member = group.member(i);
+            if (!decode(group.signatures[member], i - group.offsets[member], board)) {
+                values[i] = DRAWN;
+                continue;
+            }
+            int count = MoveGenerator.generate(board, moves);
+            if (count == 0) {
+                values[i] = DRAWN;
+                continue;
+            }
+            boolean wins = false;
+            boolean allLose = true;
+            int slowest = 0;
+            for (int m = 0; m < count && !wins; m++) {
+                if (Move.captured(moves[m]) == BitboardPosition.SAU) {
+                    wins = true;
+                    break;
+                }
+                board.makeMove(moves[m]);
+                int value = lookup(group, board, pass);
+                board.unmakeMove();
+                if (value > 0 && (value & 1) == 0) {
+                    // A loss known before pass - 1 would have settled this position earlier
+                    wins = value == pass - 1;
+                    allLose = false;
+                } else if (value > 0) {
+                    slowest = Math.max(slowest, value);
+                } else {
+                    allLose = false;
+                }
+            }
+            if (wins) {
+                values[i] = (short) pass;
+                settled++;
+            } else if (allLose && slowest == pass - 1) {
+                values[i] = (short) pass;
+                settled++;
+            }
+        }
+        return settled;
+    }
+
+    // Counts the wins in a range of the index that have no move into a loss one ply shorter
+    private int check(Group group, int from, int to) {
+        BitboardPosition board = new BitboardPosition();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        short[] values = group.values;
+        int inconsistent = 0;
+        for (int i = from; i < to; i++) {
+            int value = values[i];
+            if (value <= 0 || (value & 1) == 0) {
+                continue;
+            }
+            int member = group.member(i);
+            decode(group.signatures[member], i - group.offsets[member], board);
+            int count = MoveGenerator.generate(board, moves);
+            boolean found = false;
+            for (int m = 0; m < count && !found; m++) {
+                if (value == 1) {
+                    found = Move.captured(moves[m]) == BitboardPosition.SAU;
+                } else {
+                    board.makeMove(moves[m]);
+                    found = lookup(group, board, Integer.MAX_VALUE) == value - 1;
+                    board.unmakeMove();
+                }
+            }
+            if (!found) {
+                inconsistent++;
+            }
+        }
+        return inconsistent;
+    }
+
+    // The distance of a successor as known before the given pass, or 0 if it is drawn or still open
+    private int lookup(Group group, BitboardPosition board, int pass) {
+        int signature = Tablebase.signature(board);
+        int value = 0;
+        boolean inGroup = false;
+        for (int member = 0; member < group.signatures.length && !inGroup; member++) {
+            if (group.signatures[member] == signature) {
+                value = group.values[(int) (group.offsets[member] + Tablebase.index(board, signature))];
+                inGroup = true;
+            }
+        }
+        if (!inGroup) {
+            // Tables with fewer pieces are complete, but their distances only count from the pass after
+            value = tablebase.probe(board);
+            if (value == Tablebase.NOT_FOUND) {
+                throw new IllegalStateException("Table " + Tablebase.name(signature) + " is missing");
+            }
+        }
+        return value > 0 && value < pass ? value : 0;
+    }
+
+    /**
+     * Sets a board up from an index slot, the reverse of Tablebase.index.
+     *
+     * @param signature The signature of the table.
+     * @param index The slot.
+     * @param board The board to set up.
+     * @return False if the slot is unused, because two pieces share a square or pieces of the same
+     *         type are out of square order.
+     */
+    static boolean decode(int signature, long index, BitboardPosition board) {
+        board.clear();
+        int phase = (int) (index % Tablebase.PHASES);
+        index /= Tablebase.PHASES;
+        int rams = Tablebase.count(signature, 0, BitboardPosition.RAM) + Tablebase.count(signature, 1, BitboardPosition.RAM);
+        long ramBits = index & ((1L << rams) - 1);
+        index >>>= rams;
+
+        // The last piece in signature order holds the lowest digit, so place the pieces backwards
+        int previousSquare = -1;
+        for (int side = 1; side >= 0; side--) {
+            for (int type = BitboardPosition.SAU; type >= BitboardPosition.RAM; type--) {
+                int count = Tablebase.count(signature, side, type);
+                for (int i = 0; i < count; i++) {
+                    int square = (int) (index % BitboardPosition.SQUARES);
+                    index /= BitboardPosition.SQUARES;
+                    if (board.pieceTypeAt(square) != BitboardPosition.NO_PIECE || (i > 0 && square >= previousSquare)) {
+                        return false;
+                    }
+                    boolean descending = false;
+                    if (type == BitboardPosition.RAM) {
+                        descending = (ramBits & 1) != 0;
+                        ramBits >>>= 1;
+                    }
+                    board.put(side, type, square, descending);
+                    previousSquare = square;
+                }
+            }
+        }
+        board.setSideToMove(phase & 1);
+        board.setTurnCount((phase & 2) != 0 ? 1 : 2);
+        return true;
+    }
+
+    // Writes the table of one member of a group, converting the working values to distances
+    private void write(Group group, int member) throws IOException {
+        int signature = group.signatures[member];
+        int offset = (int) group.offsets[member];
+        int length = (int) Tablebase.size(signature);
+        int maxDistance = 0;
+        for (int i = offset; i < offset + length; i++) {
+            maxDistance = Math.max(maxDistance, group.values[i]);
+        }
+        int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(maxDistance));
+        long[] words = new long[(int) Tablebase.words(length, bits)];
+        for (int i = 0; i < length; i++) {
+            long value = Math.max(0, group.values[offset + i]);
+            long bit = (long) i * bits;
+            int word = (int) (bit >>> 6);
+            int shift = (int) (bit & 63);
+            words[word] |= value << shift;
+            if (shift + bits > 64) {
+                words[word + 1] |= value >>> (64 - shift);
+            }
+        }
+
+        Path file = directory.resolve(Tablebase.name(signature) + Tablebase.EXTENSION);
+        Path temporary = Path.of(file + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            out.writeInt(Tablebase.MAGIC);
+            out.writeInt(signature);
+            out.writeInt(bits);
+            out.writeInt(maxDistance);
+            out.writeLong(length);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        tablebase.forget(signature);
+    }
+
+    // Collects every signature with at most the given number of pieces besides the Saus
+    private static void addSignatures(List<Integer> signatures, int field, int signature, int piecesLeft) {
+        if (field == 2 * BitboardPosition.SAU) {
+            signatures.add(signature);
+            return;
+        }
+        for (int count = 0; count <= Math.min(piecesLeft, Tablebase.FIELD_MASK); count++) {
+            addSignatures(signatures, field + 1, signature | count << field * Tablebase.FIELD_BITS, piecesLeft - count);
+        }
+    }
+
+    private static String groupName(Group group) {
+        StringBuilder name = new StringBuilder(Tablebase.name(group.signatures[0]));
+        for (int i = 1; i < group.signatures.length; i++) {
+            name.append(" + ").append(Tablebase.name(group.signatures[i]));
+        }
+        return name.toString();
+    }
+
+    /**
+     * The tables solved together: a signature and its Xor/Tor counterpart, their indexes laid end
+     * to end in one array of working values.
+     */
+    private static final class Group {
+        final int[] signatures;
+        final long[] offsets;
+        final short[] values;
+
+        Group(int[] signatures) {
+            this.signatures = signatures;
+            this.offsets = new long[signatures.length];
+            long total = 0;
+            for (int i = 0; i < signatures.length; i++) {
+                offsets[i] = total;
+                total += Tablebase.size(signatures[i]);
+            }
+            if (total > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Tables " + Tablebase.name(signatures[0]) + " are too large to build");
+            }
+            this.values = new short[(int) total];
+        }
+
+        int member(int index) {
+            return signatures.length > 1 && index >= offsets[1] ? 1 : 0;
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package engine;
+
+import model.BitboardPosition;
+import model.GameReplay;
+import model.Move;
+import model.MoveGenerator;
+import model.MoveNotation;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Plays AutoPlayers against each other headless, to measure playing strength and throughput
+ * without anyone clicking through GameContainer.
+ *
+ * Every pair of players meets for the same number of games. The games cycle through a list of
+ * openings, each opening being played twice with the players swapping sides, so that neither
+ * player profits from a lucky opening or from moving first. Without an openings file every game
+ * starts from the setup of GameState.setPieces.
+ *
+ * Games run in parallel, one per thread, each thread having its own instance of every player.
+ * Each finished game is written to the results file straight away, one line per game, so a
+ * long tournament can be followed or cut short without losing the games already played.
+ *
+ * A game is won by capturing the opponent's Sau, or when the opponent runs out of time or plays
+ * an illegal move. It is drawn when the side to move has no move, when a position occurs for the
+ * third time, or after the maximum number of plies. With a time control every player gets the
+ * base time for the whole game plus the increment after each move, and is asked to spend about
+ * a MOVES_TO_GO-th of its remaining time on each move.
+ *
+ * Players are given as "alphabeta[:depth]", "mcts[:playouts]" or "random". An openings file
+ * holds one opening per line, as moves in MoveNotation separated by commas; empty lines and lines
+ * starting with '#' are skipped.
+ *
+ * Usage: java engine.Tournament [-games n] [-threads n] [-time baseMillis+incrementMillis]
+ *        [-openings file] [-out file] [-maxplies n] player player...
+ */
+public class Tournament {
+    public static final int DEFAULT_GAMES = 100;
+    public static final int DEFAULT_MAX_PLIES = 300;
+    public static final int DEFAULT_DEPTH = 4;
+    public static final long DEFAULT_PLAYOUTS = 10_000;
+    public static final int MOVES_TO_GO = 30;
+    public static final long MOVE_OVERHEAD_MILLIS = 5;
+
+    public static final int FIRST_WINS = 0;
+    public static final int SECOND_WINS = 1;
+    public static final int DRAW = 2;
+
+    private final List<String> players;
+    private final List<Supplier<AutoPlayer>> factories = new ArrayList<>();
+    private final List<GameReplay> openings;
+    private final int gamesPerPairing;
+    private final int[][] pairings;
+    private final long baseMillis;
+    private final long incrementMillis;
+    private final int maxPlies;
+
+    // Results by pairing, from the view of the pairing's first player
+    private final int[] wins;
+    private final int[] draws;
+    private final int[] losses;
+    private final AtomicInteger nextGame = new AtomicInteger();
+    private int finishedGames;
+    private long totalPlies;
+
+    public static void main(String[] args) throws IOException {
+        int games = DEFAULT_GAMES;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long base = 0;
+        long increment = 0;
+        int maxPlies = DEFAULT_MAX_PLIES;
+        Path openingsFile = null;
+        Path out = Path.of("tournament.csv");
+        List<String> players = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-games" -> games = Integer.parseInt(args[++i]);
+                case "-threads" -> threads = Integer.parseInt(args[++i]);
+                case "-maxplies" -> maxPlies = Integer.parseInt(args[++i]);
+                case "-openings" -> openingsFile = Path.of(args[++i]);
+                case "-out" -> out = Path.of(args[++i]);
+                case "-time" -> {
+                    String[] parts = args[++i].split("\\+");
+                    base = Long.parseLong(parts[0]);
+                    increment = parts.length > 1 ? Long.parseLong(parts[1]) : 0;
+                }
+                default -> players.add(args[i]);
+            }
+        }
+        if (players.size() < 2) {
+            System.out.println("Usage: java engine.Tournament [-games n] [-threads n] [-time baseMillis+incrementMillis]"
+                    + " [-openings file] [-out file] [-maxplies n] player player...");
+            System.out.println("Players: alphabeta[:depth], mcts[:playouts], random");
+            return;
+        }
+        List<GameReplay> openings = openingsFile != null ? readOpenings(openingsFile) : List.of(GameReplay.of(List.of()));
+
+        Tournament tournament = new Tournament(players, openings, games, base, increment, maxPlies);
+        long start = System.nanoTime();
+        try (Writer writer = Files.newBufferedWriter(out)) {
+            tournament.run(threads, writer);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d games, %d plies in %.1f s: %.1f games/s%n",
+                tournament.getFinishedGames(), tournament.totalPlies, seconds, tournament.getFinishedGames() / seconds);
+        tournament.printStandings();
+    }
+
+    /**
+     * Sets up a round-robin tournament.
+     *
+     * @param players The player specifications, each one "alphabeta[:depth]", "mcts[:playouts]"
+     *                or "random". The same specification may be given twice.
+     * @param openings The openings to start games from, replayed from the setup of GameState.setPieces.
+     * @param gamesPerPairing The number of games each pair of players plays.
+     * @param baseMillis The time each player has for a whole game, or 0 to play without a clock.
+     * @param incrementMillis The time added to a player's clock after each of its moves.
+     * @param maxPlies The number of plies after which a game is drawn.
+     * @throws IllegalArgumentException If a player specification is not recognised or there are
+     *                                  no openings.
+     */
+    public Tournament(List<String> players, List<GameReplay> openings, int gamesPerPairing,
+                      long baseMillis, long incrementMillis, int maxPlies) {
+        if (openings.isEmpty()) {
+            throw new IllegalArgumentException("No openings to play");
+        }
+        this.players = List.copyOf(players);
+        for (String player : players) {
+            factories.add(playerFactory(player));
+        }
+        this.openings = List.copyOf(openings);
+        this.gamesPerPairing = gamesPerPairing;
+        this.baseMillis = baseMillis;
+        this.incrementMillis = incrementMillis;
+        this.maxPlies = maxPlies;
+
+        List<int[]> pairs = new ArrayList<>();
+        for (int i = 0; i < players.size(); i++) {
+            for (int j = i + 1; j < players.size(); j++) {
+                pairs.add(new int[]{i, j});
+            }
+        }
+        pairings = pairs.toArray(new int[0][]);
+        wins = new int[pairings.length];
+        draws = new int[pairings.length];
+        losses = new int[pairings.length];
+    }
+
+    /**
+     * Turns a player specification into a way of creating the player.
+     *
+     * @param player "alphabeta[:depth]", "mcts[:playouts]" or "random".
+     * @return A supplier creating a new instance of the player on every call.
+     * @throws IllegalArgumentException If the specification is not recognised.
+     */
+    public static Supplier<AutoPlayer> playerFactory(String player) {
+        String[] parts = player.split(":", 2);
+        try {
+            switch (parts[0]) {
+                case "alphabeta" -> {
+                    int depth = parts.length > 1 ? Integer.parseInt(parts[1]) : DEFAULT_DEPTH;
+                    return () -> new SearchPlayer(depth);
+                }
+                case "mcts" -> {
+                    long playouts = parts.length > 1 ? Long.parseLong(parts[1]) : DEFAULT_PLAYOUTS;
+                    return () -> new MonteCarloPlayer(playouts, 1);
+                }
+                case "random" -> {
+                    return RandomPlayer::new;
+                }
+                default -> throw new IllegalArgumentException("Unknown player: " + player);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad player setting: " + player);
+        }
+    }
+
+    /**
+     * Reads an openings file: one opening per line, as moves in MoveNotation separated by commas.
+     *
+     * @param file The openings file.
+     * @return The openings, in file order.
+     * @throws IOException If the file cannot be read or an opening is not legal.
+     */
+    public static List<GameReplay> readOpenings(Path file) throws IOException {
+        List<GameReplay> openings = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(file)) {
+            lineNumber++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            List<String> moves = new ArrayList<>();
+            for (String move : line.split(",")) {
+                moves.add(move.strip());
+            }
+            try {
+                GameReplay opening = GameReplay.of(moves);
+                if (opening.firstIllegalMove(new BitboardPosition()) >= 0) {
+                    throw new IllegalArgumentException("illegal move");
+                }
+                openings.add(opening);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Bad opening on line " + lineNumber + " of " + file + ": " + e.getMessage());
+            }
+        }
+        if (openings.isEmpty()) {
+            throw new IOException("No openings in " + file);
+        }
+        return openings;
+    }
+
+    /**
+     * Plays every game of the tournament and writes a line per game to the results file as soon
+     * as it finishes, preceded by a header line:
+     * game,opening,first,second,result,plies,termination
+     * where first is the player who moved first and result is "1-0", "0-1" or "1/2-1/2".
+     *
+     * @param threads The number of games to play at once.
+     * @param results The results file.
+     * @throws IOException If the results cannot be written.
+     */
+    public void run(int threads, Writer results) throws IOException {
+        BufferedWriter writer = results instanceof BufferedWriter buffered ? buffered : new BufferedWriter(results);
+        writer.write("game,opening,first,second,result,plies,termination");
+        writer.newLine();
+        writer.flush();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "kwazam-tournament");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < Math.max(1, threads); i++) {
+                workers.add(executor.submit(() -> {
+                    playGames(writer);
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Tournament interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return The total number of games in the tournament.
+     */
+    public int getTotalGames() {
+        return pairings.length * gamesPerPairing;
+    }
+
+    /**
+     * @return The number of games finished so far.
+     */
+    public synchronized int getFinishedGames() {
+        return finishedGames;
+    }
+
+    /**
+     * Prints the result of every pairing, with the Elo difference it implies for the first
+     * player of the pairing and its 95% confidence interval.
+     */
+    public synchronized void printStandings() {
+        for (int p = 0; p < pairings.length; p++) {
+            int games = wins[p] + draws[p] + losses[p];
+            if (games == 0) {
+                continue;
+            }
+            double score = (wins[p] + draws[p] * 0.5) / games;
+            // The standard error of the mean score per game, over outcomes of 1, 1/2 and 0
+            double variance = (wins[p] + draws[p] * 0.25) / games - score * score;
+            double margin = 1.96 * Math.sqrt(Math.max(0, variance) / games);
+            System.out.printf("%s vs %s: +%d =%d -%d  score %.1f%%  Elo %s [%s, %s]%n",
+                    players.get(pairings[p][0]), players.get(pairings[p][1]), wins[p], draws[p], losses[p],
+                    score * 100, formatElo(score), formatElo(score - margin), formatElo(score + margin));
+        }
+    }
+
+    /**
+     * Converts an expected score into an Elo difference.
+     *
+     * @param score The expected score per game, from 0 to 1.
+     * @return The rating difference that gives that score, infinite at 0 and 1.
+     */
+    public static double elo(double score) {
+        if (score <= 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (score >= 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    private static String formatElo(double score) {
+        double elo = elo(score);
+        return Double.isInfinite(elo) ? (elo > 0 ? "+inf" : "-inf") : String.format("%+.0f", elo);
+    }
+
+    // The loop of one worker thread, taking games until none are left
+    private void playGames(BufferedWriter writer) throws IOException {
+        AutoPlayer[] instances = new AutoPlayer[players.size()];
+        BitboardPosition board = new BitboardPosition();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        try {
+            for (int game = nextGame.getAndIncrement(); game < getTotalGames(); game = nextGame.getAndIncrement()) {
+                int pairing = game / gamesPerPairing;
+                int round = game % gamesPerPairing;
+                int opening = (round / 2) % openings.size();
+                int first = pairings[pairing][round % 2];
+                int second = pairings[pairing][1 - round % 2];
+                for (int player : new int[]{first, second}) {
+                    if (instances[player] == null) {
+                        instances[player] = factories.get(player).get();
+                    }
+                    instances[player].newGame();
+                }
+
+                openings.get(opening).playOut(board);
+                String[] termination = new String[1];
+                int[] plies = new int[1];
+                int outcome = playGame(board, new AutoPlayer[]{instances[first], instances[second]}, moves, termination, plies);
+                record(writer, game, opening, first, second, outcome, plies[0], termination[0]);
+            }
+        } finally {
+            for (AutoPlayer instance : instances) {
+                if (instance != null) {
+                    instance.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Plays one game to the end from a position.
+     *
+     * @param board The starting position, played on and left in the final position.
+     * @param sides The player moving first in the starting position, then the other player.
+     * @param moves A move buffer of MoveGenerator.MAX_MOVES.
+     * @param termination Receives the reason the game ended.
+     * @param plies Receives the number of plies played from the starting position.
+     * @return FIRST_WINS, SECOND_WINS or DRAW.
+     */
+    private int playGame(BitboardPosition board, AutoPlayer[] sides, int[] moves, String[] termination, int[] plies) {
+        int firstSide = board.getSideToMove();
+        long[] clocks = {baseMillis, baseMillis};
+        Map<Long, Integer> seen = new HashMap<>();
+        for (int ply = 0; ; ply++) {
+            plies[0] = ply;
+            int mover = board.getSideToMove();
+            int turn = mover == firstSide ? 0 : 1;
+            if (!board.hasSau(mover)) {
+                termination[0] = "Sau captured";
+                return 1 - turn;
+            }
+            if (ply >= maxPlies) {
+                termination[0] = "move limit";
+                return DRAW;
+            }
+            if (seen.merge(board.getKey(), 1, Integer::sum) >= 3) {
+                termination[0] = "repetition";
+                return DRAW;
+            }
+            int count = MoveGenerator.generate(board, moves);
+            if (count == 0) {
+                termination[0] = "no moves";
+                return DRAW;
+            }
+
+            long budget = 0;
+            if (baseMillis > 0) {
+                budget = Math.max(1, Math.min(clocks[turn] - MOVE_OVERHEAD_MILLIS, clocks[turn] / MOVES_TO_GO + incrementMillis));
+            }
+            long start = System.nanoTime();
+            int move = sides[turn].chooseMove(board, budget);
+            if (baseMillis > 0) {
+                clocks[turn] -= (System.nanoTime() - start) / 1_000_000L;
+                if (clocks[turn] < 0) {
+                    termination[0] = "time forfeit";
+                    return 1 - turn;
+                }
+                clocks[turn] += incrementMillis;
+            }
+            // Take the move from the generated list, so that a player cannot sneak in a bad one
+            int legal = Move.NONE;
+            for (int i = 0; i < count && legal == Move.NONE; i++) {
+                if (moves[i] == move) {
+                    legal = move;
+                }
+            }
+            if (legal == Move.NONE) {
+                termination[0] = "illegal move " + (move == Move.NONE ? "none" : MoveNotation.format(move));
+                return 1 - turn;
+            }
+            board.makeMove(legal);
+        }
+    }
+
+    // Counts a finished game and writes its line to the results file
+    private synchronized void record(BufferedWriter writer, int game, int opening, int first, int second,
+                                     int outcome, int plies, String termination) throws IOException {
+        int pairing = game / gamesPerPairing;
+        boolean pairingFirstMoved = pairings[pairing][0] == first;
+        if (outcome == DRAW) {
+            draws[pairing]++;
+        } else if ((outcome == FIRST_WINS) == pairingFirstMoved) {
+            wins[pairing]++;
+        } else {
+            losses[pairing]++;
+        }
+        finishedGames++;
+        totalPlies += plies;
+
+        String result = outcome == FIRST_WINS ? "1-0" : outcome == SECOND_WINS ? "0-1" : "1/2-1/2";
+        writer.write(String.join(",", Integer.toString(game), Integer.toString(opening),
+                players.get(first), players.get(second), result, Integer.toString(plies), termination));
+        writer.newLine();
+        writer.flush();
+
+        int step = Math.max(1, getTotalGames() / 20);
+        if (finishedGames % step == 0 || finishedGames == getTotalGames()) {
+            System.out.printf("%d/%d games, results so far %s%n", finishedGames, getTotalGames(), Arrays.toString(scores()));
+        }
+    }
+
+    // The score of the first player of every pairing, as "+wins =draws -losses"
+    private String[] scores() {
+        String[] scores = new String[pairings.length];
+        for (int p = 0; p < pairings.length; p++) {
+            scores[p] = "+" + wins[p] + " =" + draws[p] + " -" + losses[p];
+        }
+        return scores;
+    }
+}
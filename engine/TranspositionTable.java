@@ -0,0 +1,136 @@
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size transposition table keyed by BitboardPosition.getKey, so that a position reached
+ * through different move orders, or again after the Xor/Tor cycle comes round, is searched once.
+ *
+ * The table is a single preallocated long[] with no per-entry objects. Each bucket holds two
+ * entries of two longs: the first entry is only replaced by a search of at least the same depth,
+ * the second is always replaced. An entry stores its data word and the key XORed with that data
+ * word. A probe recomputes the key from both words and rejects the entry unless it matches the
+ * full 64-bit key, so index collisions are never trusted. This also makes the table safe to share
+ * between search threads without locks: an entry torn by two simultaneous writers simply fails
+ * the check.
+ *
+ * A data word packs the move (bits 0-19), the score plus an offset (bits 20-41), the depth
+ * (bits 42-49) and the bound type (bits 50-51).
+ */
+public class TranspositionTable {
+    public static final int EXACT = 1;
+    public static final int LOWER_BOUND = 2;
+    public static final int UPPER_BOUND = 3;
+
+    private static final int ENTRY_LONGS = 2;
+    private static final int BUCKET_LONGS = 2 * ENTRY_LONGS;
+    private static final int BUCKET_BYTES = BUCKET_LONGS * Long.BYTES;
+    private static final long SCORE_OFFSET = 1L << 21;
+
+    private final long[] table;
+    private final long bucketMask;
+
+    /**
+     * Allocates a table of about the given size, rounded down to a power of two buckets.
+     *
+     * @param megabytes The memory to use, in megabytes. At least one bucket is always allocated.
+     */
+    public TranspositionTable(int megabytes) {
+        long buckets = Long.highestOneBit(Math.max(1L, (long) megabytes * 1024 * 1024 / BUCKET_BYTES));
+        buckets = Math.min(buckets, Integer.highestOneBit(Integer.MAX_VALUE / BUCKET_LONGS));
+        this.table = new long[(int) buckets * BUCKET_LONGS];
+        this.bucketMask = buckets - 1;
+    }
+
+    /**
+     * Looks up a position.
+     *
+     * @param key The Zobrist key of the position.
+     * @return The data word of the matching entry, to be unpacked with move, score, depth and
+     *         bound, or 0 if the position is not in the table.
+     */
+    public long probe(long key) {
+        int index = (int) (key & bucketMask) * BUCKET_LONGS;
+        for (int slot = index; slot < index + BUCKET_LONGS; slot += ENTRY_LONGS) {
+            long data = table[slot + 1];
+            if (data != 0 && (table[slot] ^ data) == key) {
+                return data;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Stores the result of searching a position. The depth-preferred entry of the bucket is
+     * replaced when the new search is at least as deep or the entry belongs to the same position;
+     * otherwise the always-replace entry is overwritten.
+     *
+     * @param key The Zobrist key of the position.
+     * @param move The best move found, or Move.NONE.
+     * @param score The score, already adjusted so that mate scores are relative to this position.
+     * @param depth The depth the position was searched to.
+     * @param bound EXACT, LOWER_BOUND or UPPER_BOUND.
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        long data = (move & 0xFFFFFL)
+                | ((score + SCORE_OFFSET) & 0x3FFFFFL) << 20
+                | (long) (depth & 0xFF) << 42
+                | (long) bound << 50;
+        int index = (int) (key & bucketMask) * BUCKET_LONGS;
+        long preferred = table[index + 1];
+        int slot = index;
+        if (preferred != 0 && (table[index] ^ preferred) != key && depth(preferred) > depth) {
+            slot = index + ENTRY_LONGS;
+        }
+        table[slot] = key ^ data;
+        table[slot + 1] = data;
+    }
+
+    /**
+     * Empties the table, for example before a new game.
+     */
+    public void clear() {
+        Arrays.fill(table, 0L);
+    }
+
+    /**
+     * Retrieves the size of the table.
+     *
+     * @return The number of entries the table can hold.
+     */
+    public int capacity() {
+        return table.length / ENTRY_LONGS;
+    }
+
+    /**
+     * @param data A data word returned by probe.
+     * @return The stored best move, or Move.NONE.
+     */
+    public static int move(long data) {
+        return (int) (data & 0xFFFFFL);
+    }
+
+    /**
+     * @param data A data word returned by probe.
+     * @return The stored score.
+     */
+    public static int score(long data) {
+        return (int) (((data >>> 20) & 0x3FFFFFL) - SCORE_OFFSET);
+    }
+
+    /**
+     * @param data A data word returned by probe.
+     * @return The depth the stored score was searched to.
+     */
+    public static int depth(long data) {
+        return (int) ((data >>> 42) & 0xFF);
+    }
+
+    /**
+     * @param data A data word returned by probe.
+     * @return EXACT, LOWER_BOUND or UPPER_BOUND.
+     */
+    public static int bound(long data) {
+        return (int) ((data >>> 50) & 3);
+    }
+}
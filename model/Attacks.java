@@ -0,0 +1,69 @@
+package model;
+
+/**
+ * Precomputed destination tables for the pieces whose moves do not depend on other pieces.
+ *
+ * On the fixed 5x8 board the squares a Biz, Sau or Ram can reach from a given square never
+ * change, so they are computed once when the class is loaded and stored as one bitmask per
+ * square. Generating moves for these pieces is then a table lookup followed by masking out
+ * the mover's own pieces. Square indices follow BitboardPosition.
+ */
+public final class Attacks {
+    /** Squares a Biz can jump to from each square. */
+    public static final long[] BIZ = new long[BitboardPosition.SQUARES];
+    /** Squares a Sau can step to from each square. */
+    public static final long[] SAU = new long[BitboardPosition.SQUARES];
+    /** The square a Ram travelling towards row 1 steps to, or 0 on the first row. */
+    public static final long[] RAM_ASCENDING = new long[BitboardPosition.SQUARES];
+    /** The square a Ram travelling towards row 8 steps to, or 0 on the last row. */
+    public static final long[] RAM_DESCENDING = new long[BitboardPosition.SQUARES];
+
+    private static final int[][] BIZ_OFFSETS = {
+            {2, 1}, {2, -1}, {-2, 1}, {-2, -1},
+            {1, 2}, {1, -2}, {-1, 2}, {-1, -2}
+    };
+    private static final int[][] SAU_OFFSETS = {
+            {1, 0}, {1, 1}, {0, 1}, {-1, 1},
+            {-1, 0}, {-1, -1}, {0, -1}, {1, -1}
+    };
+
+    static {
+        for (int square = 0; square < BitboardPosition.SQUARES; square++) {
+            int col = BitboardPosition.col(square);
+            int row = BitboardPosition.row(square);
+            BIZ[square] = offsets(col, row, BIZ_OFFSETS);
+            SAU[square] = offsets(col, row, SAU_OFFSETS);
+            RAM_ASCENDING[square] = bit(col, row - 1);
+            RAM_DESCENDING[square] = bit(col, row + 1);
+        }
+    }
+
+    private Attacks() {
+    }
+
+    /**
+     * Retrieves the square a Ram steps to.
+     *
+     * @param square The square the Ram stands on.
+     * @param descending true if the Ram travels towards row 8, false if towards row 1.
+     * @return A mask holding the single destination square, or 0 if the Ram is on the edge it travels towards.
+     */
+    public static long ram(int square, boolean descending) {
+        return descending ? RAM_DESCENDING[square] : RAM_ASCENDING[square];
+    }
+
+    private static long offsets(int col, int row, int[][] offsets) {
+        long mask = 0L;
+        for (int[] offset : offsets) {
+            mask |= bit(col + offset[0], row + offset[1]);
+        }
+        return mask;
+    }
+
+    private static long bit(int col, int row) {
+        if (col < 0 || col >= BitboardPosition.COLUMNS || row < 0 || row >= BitboardPosition.ROWS) {
+            return 0L;
+        }
+        return 1L << BitboardPosition.square(col, row);
+    }
+}
@@ -0,0 +1,501 @@
+package model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Represents the Kwazam board as a set of bitboards, one 64-bit word per piece type per player.
+ * The 5x8 board has only 40 squares, so every square fits into a single bit of a long. Square
+ * indices run row by row, so square = row * 5 + col, with square 0 at column A of row 1.
+ *
+ * Alongside the bitboards the position keeps a 40-byte mailbox so that "what is on this square"
+ * is answered with one array read, the direction every Ram is currently travelling in, the side
+ * to move and the turn counter that drives the periodic Xor/Tor transformation. A 64-bit
+ * Zobrist key of all of that is updated incrementally by every method that changes the position.
+ *
+ * GameState keeps one instance of this class in sync with its Tile[][] board so that move
+ * generation, capture detection and the Sau-capture win check can work on plain longs
+ * instead of walking Tile and Piece objects.
+ */
+public class BitboardPosition {
+    public static final int RAM = 0;
+    public static final int BIZ = 1;
+    public static final int TOR = 2;
+    public static final int XOR = 3;
+    public static final int SAU = 4;
+    public static final int PIECE_TYPES = 5;
+    public static final int NO_PIECE = -1;
+
+    public static final int COLUMNS = 5;
+    public static final int ROWS = 8;
+    public static final int SQUARES = COLUMNS * ROWS;
+    public static final long BOARD_MASK = (1L << SQUARES) - 1;
+
+    public static final String[] PIECE_NAMES = {"Ram", "Biz", "Tor", "Xor", "Sau"};
+
+    private final long[][] pieces = new long[2][PIECE_TYPES];
+    private final long[] occupied = new long[2];
+    private final byte[] mailbox = new byte[SQUARES];
+    private long descendingRams;
+    private int sideToMove;
+    private int turnCount = 1;
+    private long key;
+    private int score;
+
+    // Undo stack for makeMove/unmakeMove: the move, the Ram directions and the key before it
+    private int[] undoMoves = new int[64];
+    private long[] undoRams = new long[64];
+    private long[] undoKeys = new long[64];
+    private int ply;
+
+    /**
+     * Converts a column and row on the game board into a square index.
+     *
+     * @param col The column index, from 0 to 4.
+     * @param row The row index, from 0 to 7.
+     * @return The square index, from 0 to 39.
+     */
+    public static int square(int col, int row) {
+        return row * COLUMNS + col;
+    }
+
+    /**
+     * Retrieves the column of a square index.
+     *
+     * @param square The square index, from 0 to 39.
+     * @return The column index of the square.
+     */
+    public static int col(int square) {
+        return square % COLUMNS;
+    }
+
+    /**
+     * Retrieves the row of a square index.
+     *
+     * @param square The square index, from 0 to 39.
+     * @return The row index of the square.
+     */
+    public static int row(int square) {
+        return square / COLUMNS;
+    }
+
+    /**
+     * Maps the name of a piece, as returned by Piece.getName, to its bitboard piece type.
+     *
+     * @param name The name of the piece, such as "Ram" or "Sau".
+     * @return The matching piece type constant, or NO_PIECE if the name is unknown.
+     */
+    public static int typeOf(String name) {
+        return switch (name) {
+            case "Ram" -> RAM;
+            case "Biz" -> BIZ;
+            case "Tor" -> TOR;
+            case "Xor" -> XOR;
+            case "Sau" -> SAU;
+            default -> NO_PIECE;
+        };
+    }
+
+    /**
+     * Maps the owner of a piece to its side index. P1 is side 0 and P2 is side 1,
+     * matching the order of the players array in GameState.
+     *
+     * @param piece The piece whose owner is looked up.
+     * @return 0 if the piece belongs to P1, 1 otherwise.
+     */
+    public static int sideOf(Piece piece) {
+        return piece.getOwnerName().equals("P1") ? 0 : 1;
+    }
+
+    /**
+     * Removes every piece from the position and resets the turn state to the start of a game.
+     */
+    public void clear() {
+        for (int side = 0; side < 2; side++) {
+            occupied[side] = 0L;
+            for (int type = 0; type < PIECE_TYPES; type++) {
+                pieces[side][type] = 0L;
+            }
+        }
+        for (int i = 0; i < SQUARES; i++) {
+            mailbox[i] = 0;
+        }
+        descendingRams = 0L;
+        sideToMove = 0;
+        turnCount = 1;
+        key = 0L;
+        score = 0;
+        ply = 0;
+    }
+
+    /**
+     * Rebuilds the bitboards from the list of Piece objects held by GameState.
+     * This is used whenever the object model is replaced wholesale, for example on a restart
+     * or after a save file has been loaded.
+     *
+     * @param boardPieces The pieces currently on the board.
+     * @param currentTurn The side to move, 0 for P1 and 1 for P2.
+     * @param turnCount The current turn counter.
+     */
+    public void setFrom(List<Piece> boardPieces, int currentTurn, int turnCount) {
+        clear();
+        for (Piece piece : boardPieces) {
+            int type = typeOf(piece.getName());
+            if (type == NO_PIECE) {
+                continue;
+            }
+            boolean descending = false;
+            if (piece instanceof Ram ram) {
+                // Rams on an edge row always head back, whatever their multiplier still says
+                descending = ram.isTopRow() || (!ram.isBottomRow() && ram.getPromotionMultiplier() < 0);
+            }
+            put(sideOf(piece), type, square(piece.getCol(), piece.getRow()), descending);
+        }
+        setSideToMove(currentTurn);
+        setTurnCount(turnCount);
+    }
+
+    /**
+     * Places a piece on an empty square.
+     *
+     * @param side The side that owns the piece.
+     * @param type The piece type.
+     * @param square The square to place the piece on.
+     * @param descending For Rams, whether the Ram is travelling towards row 8. Ignored for other pieces.
+     */
+    public void put(int side, int type, int square, boolean descending) {
+        long bit = 1L << square;
+        pieces[side][type] |= bit;
+        occupied[side] |= bit;
+        mailbox[square] = (byte) ((side << 3) | (type + 1));
+        key ^= Zobrist.PIECES[side][type][square];
+        score += PieceSquareTables.SCORES[side][type][square];
+        if (type == RAM) {
+            setRamDirection(square, descending);
+        }
+    }
+
+    /**
+     * Removes whatever piece occupies the given square.
+     *
+     * @param square The square to clear.
+     * @return The piece type that was removed, or NO_PIECE if the square was empty.
+     */
+    public int remove(int square) {
+        int code = mailbox[square];
+        if (code == 0) {
+            return NO_PIECE;
+        }
+        int side = code >> 3;
+        int type = (code & 7) - 1;
+        long bit = 1L << square;
+        pieces[side][type] &= ~bit;
+        occupied[side] &= ~bit;
+        mailbox[square] = 0;
+        key ^= Zobrist.PIECES[side][type][square];
+        score -= PieceSquareTables.SCORES[side][type][square];
+        setRamDirection(square, false);
+        return type;
+    }
+
+    /**
+     * Moves the piece standing on one square to another, removing any piece on the destination.
+     * A Ram that lands on the first or last row turns around, mirroring the promotion multiplier
+     * update performed by Ram.getMoves.
+     *
+     * @param from The square the piece is moving from.
+     * @param to The square the piece is moving to.
+     * @return The piece type that was captured on the destination, or NO_PIECE for a quiet move.
+     */
+    public int movePiece(int from, int to) {
+        int code = mailbox[from];
+        int side = code >> 3;
+        int type = (code & 7) - 1;
+        boolean descending = (descendingRams & (1L << from)) != 0;
+        remove(from);
+        int captured = remove(to);
+        if (type == RAM) {
+            int row = row(to);
+            if (row == 0) {
+                descending = true;
+            } else if (row == ROWS - 1) {
+                descending = false;
+            }
+        }
+        put(side, type, to, descending);
+        return captured;
+    }
+
+    /**
+     * Turns every Xor into a Tor and every Tor into an Xor for both players,
+     * mirroring GameState.switchXorTor. On bitboards this is a swap of two words per side.
+     */
+    public void switchXorTor() {
+        for (int side = 0; side < 2; side++) {
+            long tors = pieces[side][TOR];
+            long xors = pieces[side][XOR];
+            pieces[side][TOR] = xors;
+            pieces[side][XOR] = tors;
+            byte torCode = (byte) ((side << 3) | (TOR + 1));
+            byte xorCode = (byte) ((side << 3) | (XOR + 1));
+            long swapped = tors | xors;
+            while (swapped != 0) {
+                int square = Long.numberOfTrailingZeros(swapped);
+                swapped &= swapped - 1;
+                boolean wasTor = mailbox[square] == torCode;
+                mailbox[square] = wasTor ? xorCode : torCode;
+                key ^= Zobrist.XOR_TOR_SWAP[side][square];
+                score += wasTor ? PieceSquareTables.SWAP[side][square] : -PieceSquareTables.SWAP[side][square];
+            }
+        }
+    }
+
+    /**
+     * Plays a move, including the side-to-move switch, the turn counter and the Xor/Tor
+     * transformation after every second full turn, exactly as GameState.movePiece does.
+     * The move can be taken back with unmakeMove in constant time.
+     *
+     * @param move A packed move (see Move) for the side to move.
+     */
+    public void makeMove(int move) {
+        if (ply == undoMoves.length) {
+            undoMoves = Arrays.copyOf(undoMoves, ply * 2);
+            undoRams = Arrays.copyOf(undoRams, ply * 2);
+            undoKeys = Arrays.copyOf(undoKeys, ply * 2);
+        }
+        undoRams[ply] = descendingRams;
+        undoKeys[ply] = key;
+
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int captured = movePiece(from, to);
+        undoMoves[ply++] = Move.encode(from, to, pieceTypeAt(to), captured);
+
+        setSideToMove(sideToMove ^ 1);
+        if (sideToMove == 0) {
+            setTurnCount(turnCount + 1);
+            if ((turnCount & 1) == 1) {
+                switchXorTor();
+            }
+        }
+    }
+
+    /**
+     * Takes back the last move played with makeMove, restoring any captured piece, the Ram
+     * directions, the Xor/Tor transformation and the turn state.
+     *
+     * @return The move that was taken back, with its captured piece filled in.
+     */
+    public int unmakeMove() {
+        int move = undoMoves[--ply];
+        if (sideToMove == 0) {
+            if ((turnCount & 1) == 1) {
+                switchXorTor();
+            }
+            setTurnCount(turnCount - 1);
+        }
+        setSideToMove(sideToMove ^ 1);
+
+        int from = Move.from(move);
+        int to = Move.to(move);
+        remove(to);
+        put(sideToMove, Move.piece(move), from, false);
+        if (Move.isCapture(move)) {
+            put(sideToMove ^ 1, Move.captured(move), to, false);
+        }
+        descendingRams = undoRams[ply];
+        key = undoKeys[ply];
+        return move;
+    }
+
+    /**
+     * Retrieves the number of moves played with makeMove that can still be taken back.
+     *
+     * @return The depth of the undo stack.
+     */
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     * Copies the full state of another position into this one without allocating.
+     * The undo stack is not copied, so the copy starts with nothing to take back.
+     *
+     * @param other The position to copy from.
+     */
+    public void copyFrom(BitboardPosition other) {
+        for (int side = 0; side < 2; side++) {
+            occupied[side] = other.occupied[side];
+            System.arraycopy(other.pieces[side], 0, pieces[side], 0, PIECE_TYPES);
+        }
+        System.arraycopy(other.mailbox, 0, mailbox, 0, SQUARES);
+        descendingRams = other.descendingRams;
+        sideToMove = other.sideToMove;
+        turnCount = other.turnCount;
+        key = other.key;
+        score = other.score;
+        ply = 0;
+    }
+
+    /**
+     * Creates an independent copy of this position.
+     *
+     * @return A new position with the same pieces and turn state.
+     */
+    public BitboardPosition copy() {
+        BitboardPosition position = new BitboardPosition();
+        position.copyFrom(this);
+        return position;
+    }
+
+    /**
+     * Retrieves the bitboard of one piece type for one side.
+     *
+     * @param side The side, 0 for P1 and 1 for P2.
+     * @param type The piece type.
+     * @return A mask with one bit set per square holding such a piece.
+     */
+    public long pieces(int side, int type) {
+        return pieces[side][type];
+    }
+
+    /**
+     * Retrieves every square occupied by one side.
+     *
+     * @param side The side, 0 for P1 and 1 for P2.
+     * @return A mask with one bit set per square holding a piece of that side.
+     */
+    public long occupancy(int side) {
+        return occupied[side];
+    }
+
+    /**
+     * Retrieves every occupied square on the board.
+     *
+     * @return A mask with one bit set per occupied square.
+     */
+    public long occupancy() {
+        return occupied[0] | occupied[1];
+    }
+
+    /**
+     * Retrieves the type of the piece standing on a square.
+     *
+     * @param square The square to inspect.
+     * @return The piece type, or NO_PIECE if the square is empty.
+     */
+    public int pieceTypeAt(int square) {
+        return (mailbox[square] & 7) - 1;
+    }
+
+    /**
+     * Retrieves the side owning the piece standing on a square.
+     *
+     * @param square The square to inspect.
+     * @return 0 for P1, 1 for P2, or -1 if the square is empty.
+     */
+    public int ownerAt(int square) {
+        int code = mailbox[square];
+        return code == 0 ? -1 : code >> 3;
+    }
+
+    /**
+     * Determines whether a side still has its Sau on the board.
+     * The game ends as soon as either Sau is captured.
+     *
+     * @param side The side to check.
+     * @return true if the side still has a Sau, false if it has been captured.
+     */
+    public boolean hasSau(int side) {
+        return pieces[side][SAU] != 0;
+    }
+
+    /**
+     * Retrieves the mask of Rams currently travelling towards row 8 (the bottom of the board).
+     * Every other Ram is travelling towards row 1.
+     *
+     * @return A mask with one bit set per descending Ram.
+     */
+    public long getDescendingRams() {
+        return descendingRams;
+    }
+
+    /**
+     * Sets the travelling direction of the Ram on a square.
+     *
+     * @param square The square holding the Ram.
+     * @param descending true if the Ram travels towards row 8, false if towards row 1.
+     */
+    public void setRamDirection(int square, boolean descending) {
+        long bit = 1L << square;
+        if (((descendingRams & bit) != 0) != descending) {
+            descendingRams ^= bit;
+            key ^= Zobrist.DESCENDING_RAM[square];
+        }
+    }
+
+    /**
+     * Retrieves the Zobrist key of this position. It covers every piece with its owner and square,
+     * the direction of every Ram, the side to move and the phase of the Xor/Tor cycle, and is
+     * updated incrementally rather than recomputed.
+     *
+     * @return The 64-bit key identifying this position.
+     */
+    public long getKey() {
+        return key;
+    }
+
+    /**
+     * Retrieves the material and piece-square balance of this position (see PieceSquareTables),
+     * from P1's point of view. Like the key, it is updated incrementally as pieces are placed,
+     * moved, captured and transformed, so reading it costs nothing.
+     *
+     * @return The score, positive if P1 is better off.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Retrieves the side to move.
+     *
+     * @return 0 if P1 is to move, 1 if P2 is to move.
+     */
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    /**
+     * Sets the side to move.
+     *
+     * @param sideToMove 0 if P1 is to move, 1 if P2 is to move.
+     */
+    public void setSideToMove(int sideToMove) {
+        if (this.sideToMove != sideToMove) {
+            key ^= Zobrist.SIDE_TO_MOVE;
+        }
+        this.sideToMove = sideToMove;
+    }
+
+    /**
+     * Retrieves the turn counter, which starts at 1 and increases after every move by P2.
+     * Xor and Tor pieces transform whenever the counter becomes odd.
+     *
+     * @return The current turn counter.
+     */
+    public int getTurnCount() {
+        return turnCount;
+    }
+
+    /**
+     * Sets the turn counter.
+     *
+     * @param turnCount The new turn counter.
+     */
+    public void setTurnCount(int turnCount) {
+        if (((this.turnCount ^ turnCount) & 1) != 0) {
+            key ^= Zobrist.EVEN_TURN;
+        }
+        this.turnCount = turnCount;
+    }
+}
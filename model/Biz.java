@@ -1,7 +1,5 @@
 package model;
 
-import java.util.ArrayList;
-
 /**
  * Represents the "Biz" piece in a custom board game.
  * The Biz piece can move in an "L" shape, similar to the knight piece in chess,
@@ -28,29 +26,14 @@ public class Biz extends Piece {
      *
      * @param board A two-dimensional array representing the current state of the game board.
      *              Each element is a Tile object, which may contain another piece or be empty.
-     * @return An ArrayList of intPair objects representing all valid positions to which
-     *         the "Biz" piece can move based on its rules. Each intPair contains the column
-     *         (x-coordinate) and the row (y-coordinate) of a valid move.
+     * @param moves The buffer the packed moves are written to.
+     * @param count The number of moves already in the buffer.
+     * @return The new number of moves in the buffer, after adding every valid position to which
+     *         the "Biz" piece can move based on its rules.
      *         Coded by Lai Cal Wyn
      */
     @Override
-    public ArrayList<intPair> getMoves(Tile[][] board) {
-        int[][] directions = {
-                {2, 1},
-                {2, -1},
-                {-2, 1},
-                {-2, -1},
-                {1, 2},
-                {1, -2},
-                {-1, 2},
-                {-1, -2}
-        };
-        ArrayList<intPair> moves = new ArrayList<>();
-        for (int[] direction : directions) {
-            if (isValidTile(direction[0] + getCol(), direction[1] + getRow())) {
-                moves.add(new intPair(direction[0] + getCol(), direction[1] + getRow()));
-            }
-        }
-        return moves;
+    public int generateMoves(Tile[][] board, int[] moves, int count) {
+        return addMoves(board, BitboardPosition.BIZ, Attacks.BIZ[getSquare()], moves, count);
     }
 }
\ No newline at end of file
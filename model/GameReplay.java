@@ -0,0 +1,219 @@
+package model;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Replays a game from the initial setup of GameState.setPieces, one move at a time, yielding
+ * every position along the way: the initial position first, then the position after each move.
+ *
+ * The replay is lazy and works on a single mutable BitboardPosition. Every step plays the next
+ * move on that board with makeMove, which applies the same rules as GameState.movePiece: Rams
+ * turn around on the first and last rows and Xor and Tor swap after every second full turn.
+ * The iterator therefore returns the same board object each time, updated in place, so a caller
+ * that wants to keep a position must copy it. A board can also be passed in with replayOn and
+ * reused for any number of games, so bulk analysis does not allocate per game or per move.
+ *
+ * Every move is checked before it is played: the game must not be over yet, and the move must
+ * be among the moves MoveGenerator produces for the piece on its origin square, which must belong
+ * to the player to move. A move that fails the check ends the replay with an
+ * IllegalStateException; firstIllegalMove runs the same checks without throwing.
+ */
+public class GameReplay implements Iterable<BitboardPosition> {
+    private static final BitboardPosition INITIAL_POSITION = new GameState().getBitboards().copy();
+
+    private final int[] moves;
+    private final int count;
+
+    /**
+     * Creates a replay of a move log.
+     *
+     * @param moves The moves in full or compact form, the first move of the game first. The
+     *              array is kept, not copied.
+     * @param count The number of moves to replay.
+     */
+    public GameReplay(int[] moves, int count) {
+        if (count < 0 || count > moves.length) {
+            throw new IllegalArgumentException("Invalid move count: " + count);
+        }
+        this.moves = moves;
+        this.count = count;
+    }
+
+    /**
+     * Creates a replay of a moves history as kept by GameState.
+     *
+     * @param movesHistory The moves history, every entry in MoveNotation.
+     * @return The replay.
+     * @throws IllegalArgumentException If an entry is not in MoveNotation, for example one from a
+     *                                  save written before the notation named origin squares.
+     */
+    public static GameReplay of(List<? extends CharSequence> movesHistory) {
+        int[] moves = new int[movesHistory.size()];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = MoveNotation.parse(movesHistory.get(i));
+            if (moves[i] == Move.NONE) {
+                throw new IllegalArgumentException("Move " + (i + 1) + " is not in move notation: " + movesHistory.get(i));
+            }
+        }
+        return new GameReplay(moves, moves.length);
+    }
+
+    /**
+     * Creates a replay of the move log of a game.
+     *
+     * @param gameState The game, whose move log is copied.
+     * @return The replay.
+     */
+    public static GameReplay of(GameState gameState) {
+        int[] moves = new int[gameState.getMoveLogSize()];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = gameState.getLoggedMove(i);
+        }
+        return new GameReplay(moves, moves.length);
+    }
+
+    /**
+     * Retrieves the number of moves in the replay. The replay yields one more position than that.
+     *
+     * @return The move count.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Replays the game on a new board.
+     *
+     * @return An iterator over the positions of the game.
+     */
+    @Override
+    public Cursor iterator() {
+        return replayOn(new BitboardPosition());
+    }
+
+    /**
+     * Replays the game on a board supplied by the caller, which is overwritten with the initial
+     * position straight away.
+     *
+     * @param board The board to replay on.
+     * @return An iterator over the positions of the game, each one being board itself.
+     */
+    public Cursor replayOn(BitboardPosition board) {
+        board.copyFrom(INITIAL_POSITION);
+        return new Cursor(board);
+    }
+
+    /**
+     * Plays the whole game on a board and leaves the board in the final position.
+     *
+     * @param board The board to replay on.
+     * @return The board, for convenience.
+     * @throws IllegalStateException If a move is not legal where it is played.
+     */
+    public BitboardPosition playOut(BitboardPosition board) {
+        Cursor cursor = replayOn(board);
+        while (cursor.hasNext()) {
+            cursor.next();
+        }
+        return board;
+    }
+
+    /**
+     * Checks the whole game without throwing.
+     *
+     * @param board The board to replay on, left in the position before the offending move.
+     * @return The index of the first move that is not legal where it is played, or -1 if every
+     *         move is legal.
+     */
+    public int firstIllegalMove(BitboardPosition board) {
+        Cursor cursor = replayOn(board);
+        cursor.next();
+        while (cursor.getMoveIndex() < count) {
+            if (cursor.resolve(moves[cursor.getMoveIndex()]) == Move.NONE) {
+                return cursor.getMoveIndex();
+            }
+            cursor.next();
+        }
+        return -1;
+    }
+
+    /**
+     * Steps through the positions of a replay on one board. Besides the board, the cursor tells
+     * which move was played last, with its captured piece filled in.
+     */
+    public class Cursor implements Iterator<BitboardPosition> {
+        private final BitboardPosition board;
+        private final int[] buffer = new int[MoveGenerator.MAX_PIECE_MOVES];
+        private int index = -1;
+        private int lastMove = Move.NONE;
+
+        private Cursor(BitboardPosition board) {
+            this.board = board;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < count;
+        }
+
+        /**
+         * Advances to the next position, playing the next move unless this is the first call.
+         *
+         * @return The board, now holding the next position.
+         * @throws IllegalStateException If the next move is not legal in the current position.
+         */
+        @Override
+        public BitboardPosition next() {
+            if (index >= count) {
+                throw new NoSuchElementException();
+            }
+            if (index >= 0) {
+                int move = resolve(moves[index]);
+                if (move == Move.NONE) {
+                    throw new IllegalStateException("Move " + (index + 1) + " is not legal: " + MoveNotation.format(moves[index]));
+                }
+                board.makeMove(move);
+                lastMove = move;
+            }
+            index++;
+            return board;
+        }
+
+        /**
+         * Retrieves the number of moves played so far, which is also the index of the next move.
+         *
+         * @return The move index, 0 for the initial position.
+         */
+        public int getMoveIndex() {
+            return index;
+        }
+
+        /**
+         * Retrieves the move that led to the current position.
+         *
+         * @return The full packed move, or Move.NONE at the initial position.
+         */
+        public int getLastMove() {
+            return lastMove;
+        }
+
+        // Looks the move up among those of the piece on its origin square
+        private int resolve(int move) {
+            int from = Move.from(move);
+            int side = board.getSideToMove();
+            if (from >= BitboardPosition.SQUARES || board.pieceTypeAt(from) == BitboardPosition.NO_PIECE
+                    || board.ownerAt(from) != side || !board.hasSau(0) || !board.hasSau(1)) {
+                return Move.NONE;
+            }
+            int found = MoveGenerator.generateFrom(board, from, buffer, 0);
+            for (int i = 0; i < found; i++) {
+                if (Move.compact(buffer[i]) == Move.compact(move)) {
+                    return buffer[i];
+                }
+            }
+            return Move.NONE;
+        }
+    }
+}
@@ -2,12 +2,17 @@ package model;
 
 import controller.SaveLoadManager;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Represents the state of the game, including the game board, players, pieces, and game-related information.
- * Implements the Singleton design pattern to ensure only one instance of the game state exists.
  * Manages all critical aspects of the game, such as game progression, moves, player turns, and piece transformations.
+ *
+ * Every GameState carries its own pieces, board, players and moves history, so any number of games
+ * can be created with the constructor and played side by side, each from its own thread. The desktop
+ * application shares a single instance through getInstance.
  */
 public class GameState {
     private static GameState gamestate;
@@ -20,8 +25,12 @@ public class GameState {
     private boolean gameEnded = false;
     private String winner;
     private ArrayList<String> movesHistory = new ArrayList<>();
+    private final BitboardPosition bitboards = new BitboardPosition();
+    private final ArrayDeque<UndoRecord> undoStack = new ArrayDeque<>();
+    private int[] moveLog = new int[64];
+    private int moveLogSize;
 
-    public static ArrayList<Piece> pieces = new ArrayList<>();
+    private final ArrayList<Piece> pieces = new ArrayList<>();
 
     /**
      * Represents the state of the game including the board, players, and the game's progression.
@@ -55,6 +64,7 @@ public class GameState {
 
         currentTurn = 0;
         turnCount = 1;
+        syncBitboards();
 
     }
 
@@ -62,9 +72,9 @@ public class GameState {
      * Represents the state of the game, serving as the central class to manage and track
      * the game's progress, players, board, and other related data.
      *
-     * This class follows the Singleton design pattern, ensuring that only one instance
-     * of the GameState class exists throughout the application. The Singleton pattern
-     * facilitates global access to the game's state and preserves its integrity.
+     * Returns the instance shared by the desktop application, creating it on first use.
+     * Headless code that runs several games at once should create its own instances with
+     * the constructor instead.
      * Coded by Chan Ga Wai
      */
     public static GameState getInstance() {
@@ -84,6 +94,81 @@ public class GameState {
         return board;
     }
 
+    /**
+     * Retrieves the bitboard view of the current position. It is kept in sync with the Tile[][]
+     * board by movePiece, capturePiece and switchXorTor, so callers can query occupancy, piece
+     * types and the presence of each Sau without walking Tile objects.
+     *
+     * @return The bitboard position mirroring this game state.
+     */
+    public BitboardPosition getBitboards() {
+        return bitboards;
+    }
+
+    /**
+     * Retrieves the 64-bit Zobrist key of the current position. The key is kept up to date
+     * incrementally by movePiece, capturePiece and switchXorTor, and identifies the pieces, their
+     * owners and squares, the Ram directions, the player to move and the Xor/Tor cycle phase.
+     *
+     * @return The key of the current position.
+     */
+    public long getZobristKey() {
+        return bitboards.getKey();
+    }
+
+    /**
+     * Retrieves the material and piece-square balance of the current position from P1's point of
+     * view. Like the Zobrist key it is kept up to date incrementally by movePiece, capturePiece
+     * and switchXorTor, so no pieces are scanned to read it.
+     *
+     * @return The score in centi-Ram units, positive if P1 is better off.
+     */
+    public int getScore() {
+        return bitboards.getScore();
+    }
+
+    /**
+     * Rebuilds the bitboard position from the pieces list and turn counters.
+     * This must be called after the pieces list or the board has been replaced wholesale,
+     * for example when a save file is loaded. The undo stack and the move log are cleared.
+     */
+    public void syncBitboards() {
+        bitboards.setFrom(pieces, currentTurn, turnCount);
+        undoStack.clear();
+        moveLogSize = 0;
+    }
+
+    /**
+     * Retrieves the number of moves in the move log. The log holds every move played since the
+     * game was started or loaded, unlike the moves history it keeps the origin square of each move.
+     *
+     * @return The number of logged moves.
+     */
+    public int getMoveLogSize() {
+        return moveLogSize;
+    }
+
+    /**
+     * Retrieves a move from the move log.
+     *
+     * @param index The index of the move, 0 being the first move logged.
+     * @return The move in compact form (see Move.compact).
+     */
+    public int getLoggedMove(int index) {
+        return moveLog[index];
+    }
+
+    /**
+     * Replaces the move log, for example with the moves read from a binary save file.
+     *
+     * @param moves The moves in compact form.
+     * @param count The number of moves to take from the array.
+     */
+    public void setMoveLog(int[] moves, int count) {
+        moveLog = Arrays.copyOf(moves, Math.max(count, 64));
+        moveLogSize = count;
+    }
+
     /**
      * Represents the game state for a custom board game.
      * This class is a core component of the game, managing its current state, including turn tracking,
@@ -114,19 +199,53 @@ public class GameState {
      * Retrieves a list of valid moves for a given game piece, based on its specific movement rules
      * and the current state of the game board.
      *
-     * This method delegates the logic for calculating valid moves to the specific piece's
-     * implementation of the `getMoves` method. The resulting moves are calculated relative
-     * to the piece's current position and the availability of positions on the board.
+     * The moves come from MoveGenerator on the bitboard position, the same rules every other
+     * caller uses, and are converted back to intPair objects. The resulting moves are calculated
+     * relative to the piece's current position and the availability of positions on the board.
      *
-     * @param piece The game piece for which valid moves are to be calculated. The piece must implement
-     *              its specific movement logic through its `getMoves` method.
+     * @param piece The game piece for which valid moves are to be calculated.
      * @return An ArrayList of intPair objects representing all possible moves the given piece can make
      *         on the board. Each intPair contains the column (x-coordinate) and row (y-coordinate) of
      *         a valid move position.
      *         Coded by Chan Ga Wai
      */
     public ArrayList<intPair> getValidMoves(Piece piece) {
-        return piece.getMoves(board);
+        int[] buffer = new int[MoveGenerator.MAX_PIECE_MOVES];
+        int count = generateMoves(piece, buffer);
+        ArrayList<intPair> moves = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int to = Move.to(buffer[i]);
+            moves.add(new intPair(BitboardPosition.col(to), BitboardPosition.row(to)));
+        }
+        return moves;
+    }
+
+    /**
+     * Writes the valid moves of a piece into a caller-owned buffer as packed ints (see Move),
+     * using the bitboard position instead of the Tile[][] board. Unlike getValidMoves this
+     * allocates nothing, so it is suited to code that runs on every click or repaint.
+     *
+     * @param piece The game piece for which valid moves are to be calculated.
+     * @param moves The buffer the packed moves are written to, starting at index 0. It must have
+     *              room for at least MoveGenerator.MAX_PIECE_MOVES entries.
+     * @return The number of moves written into the buffer.
+     */
+    public int generateMoves(Piece piece, int[] moves) {
+        return MoveGenerator.generateFrom(bitboards, BitboardPosition.square(piece.getCol(), piece.getRow()), moves, 0);
+    }
+
+    /**
+     * Writes only the captures of a piece into a caller-owned buffer as packed ints (see Move),
+     * each one carrying the type of the piece it takes, so callers need not look the destination
+     * tiles up to tell captures from quiet moves.
+     *
+     * @param piece The game piece whose captures are to be calculated.
+     * @param moves The buffer the packed moves are written to, starting at index 0. It must have
+     *              room for at least MoveGenerator.MAX_PIECE_MOVES entries.
+     * @return The number of captures written into the buffer.
+     */
+    public int generateCaptures(Piece piece, int[] moves) {
+        return MoveGenerator.generateCapturesFrom(bitboards, BitboardPosition.square(piece.getCol(), piece.getRow()), moves, 0);
     }
 
     /**
@@ -189,6 +308,7 @@ public class GameState {
      */
     public void setCurrentTurn(int currentTurn) {
         this.currentTurn = currentTurn;
+        bitboards.setSideToMove(currentTurn);
     }
 
     /**
@@ -200,6 +320,7 @@ public class GameState {
      */
     public void setTurnCount(int turnCount) {
         this.turnCount = turnCount;
+        bitboards.setTurnCount(turnCount);
     }
 
     /**
@@ -210,7 +331,17 @@ public class GameState {
      * Coded by Chan Ga Wai
      */
     public void saveBoard(String fileName){
-        SaveLoadManager.saveBoard(pieces, getTurnCounter(), getCurrentTurn(), getMovesHistory(),fileName);
+        SaveLoadManager.saveBoard(pieces, bitboards.getDescendingRams(), getTurnCounter(), getCurrentTurn(), getMovesHistory(),fileName);
+    }
+
+    /**
+     * Saves the game in the compact binary format of SaveLoadManager: the pieces on the board,
+     * the turn counters and the move log, protected by a checksum.
+     *
+     * @param fileName The name of the save, without directory or extension.
+     */
+    public void saveBinaryBoard(String fileName) {
+        SaveLoadManager.saveBinaryBoard(this, fileName);
     }
 
     /**
@@ -310,6 +441,12 @@ public class GameState {
      * 4. Update the game board to reflect the newly created
      * Coded by Harrish Panicker*/
     public void switchXorTor() {
+        transformPieces();
+        bitboards.switchXorTor();
+    }
+
+    // Replaces the Xor and Tor objects on the board; the bitboards are updated by the caller
+    private void transformPieces() {
         ArrayList<Piece> piecesToAdd = new ArrayList<>();
         ArrayList<Piece> piecesToRemove = new ArrayList<>();
 
@@ -342,25 +479,125 @@ public class GameState {
      * Coded by Harrish Panicker
      */
     public void movePiece(Piece currentPiece, Tile destination) {
-        // to be edited
+        makeMove(currentPiece, destination);
+    }
+
+    /**
+     * Plays a move on the board and records how to take it back. Any piece on the destination
+     * tile is captured, the turn passes to the other player, and after every second full turn
+     * the Xor and Tor pieces transform. The returned record is also pushed onto the undo stack
+     * used by unmakeMove, so the move can be reversed without rebuilding the board.
+     *
+     * @param currentPiece The piece to move.
+     * @param destination The tile the piece moves to.
+     * @return The undo record describing what the move changed.
+     */
+    public UndoRecord makeMove(Piece currentPiece, Tile destination) {
         int currentRow = currentPiece.getRow();
         int currentCol = currentPiece.getCol();
+        int from = BitboardPosition.square(currentCol, currentRow);
+        int to = BitboardPosition.square(destination.getCol(), destination.getRow());
+
+        Piece captured = destination.getPiece();
+        int capturedType = BitboardPosition.NO_PIECE;
+        if (captured != null) {
+            pieces.remove(captured);
+            capturedType = BitboardPosition.typeOf(captured.getName());
+        }
+        int move = Move.encode(from, to, BitboardPosition.typeOf(currentPiece.getName()), capturedType);
+        bitboards.makeMove(move);
+        if (moveLogSize == moveLog.length) {
+            moveLog = Arrays.copyOf(moveLog, moveLogSize * 2);
+        }
+        moveLog[moveLogSize++] = Move.compact(move);
 
         board[currentCol][currentRow].setPiece(null);
 
         destination.setPiece(currentPiece);
         currentPiece.setRow(destination.getRow());
         currentPiece.setCol(destination.getCol());
+        if (currentPiece instanceof Ram ram) {
+            // The bitboards turn a Ram around on the edge rows; keep the Piece in step with them
+            ram.setPromotionMultiplier(isDescending(to) ? -1 : 1);
+        }
 
         currentTurn = (currentTurn + 1) % players.length;
 
+        boolean transformed = false;
         if (currentTurn == 0){
             turnCount++;
             if ((turnCount % 2) == 1){
-                System.out.println("Transforming Xor and Tor.");
-                switchXorTor();
+                transformPieces();
+                transformed = true;
             }
         }
+
+        UndoRecord record = new UndoRecord(from, to, captured, transformed);
+        undoStack.push(record);
+        return record;
+    }
+
+    // Whether the bitboards have the Ram on a square travelling towards row 8
+    private boolean isDescending(int square) {
+        return (bitboards.getDescendingRams() & (1L << square)) != 0;
+    }
+
+    /**
+     * Takes back the last move played through makeMove, movePiece or capturePiece.
+     * The captured piece, the Xor/Tor transformation and the turn counters are all restored in
+     * place, without re-allocating the board. A Ram's promotion multiplier is taken back from the
+     * bitboards, which restore the Ram directions themselves.
+     *
+     * @return The undo record of the move that was taken back, or null if there is nothing to undo.
+     */
+    public UndoRecord unmakeMove() {
+        if (undoStack.isEmpty()) {
+            return null;
+        }
+        UndoRecord record = undoStack.pop();
+        bitboards.unmakeMove();
+        if (moveLogSize > 0) {
+            moveLogSize--;
+        }
+
+        if (record.isTransformed()) {
+            transformPieces();
+        }
+        if (currentTurn == 0) {
+            turnCount--;
+        }
+        currentTurn = (currentTurn + players.length - 1) % players.length;
+
+        Tile destination = board[BitboardPosition.col(record.getTo())][BitboardPosition.row(record.getTo())];
+        Tile origin = board[BitboardPosition.col(record.getFrom())][BitboardPosition.row(record.getFrom())];
+        Piece piece = destination.getPiece();
+        destination.setPiece(record.getCaptured());
+        origin.setPiece(piece);
+        piece.setCol(origin.getCol());
+        piece.setRow(origin.getRow());
+        if (piece instanceof Ram ram) {
+            ram.setPromotionMultiplier(isDescending(record.getFrom()) ? -1 : 1);
+        }
+
+        Piece captured = record.getCaptured();
+        if (captured != null) {
+            pieces.add(captured);
+            if (captured.getName().equals("Sau")) {
+                gameEnded = false;
+                winner = null;
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Determines whether there is a move that can be taken back with unmakeMove.
+     * The undo stack is cleared whenever the game is restarted or loaded.
+     *
+     * @return true if at least one move can be undone.
+     */
+    public boolean canUndo() {
+        return !undoStack.isEmpty();
     }
 
     /**
@@ -480,6 +717,7 @@ public class GameState {
         }
         turnCount = 1;
         currentTurn = 0;
+        syncBitboards();
 
         movesHistory.clear();
     }
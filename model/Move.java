@@ -0,0 +1,136 @@
+package model;
+
+/**
+ * Packs a move into a single int so that move lists can live in plain int[] buffers
+ * owned by the caller instead of ArrayLists of intPair objects.
+ *
+ * The layout of a packed move is:
+ * bits 0-5 hold the origin square, bits 6-11 the destination square, bits 12-14 the type of the
+ * moving piece and bits 15-17 the type of the captured piece plus one (zero for a quiet move).
+ * Square indices and piece types follow BitboardPosition.
+ *
+ * A packed move is never zero, because a piece cannot move onto its own square, so zero is
+ * reserved as the NONE value.
+ *
+ * For storage a move can be shortened to 16 bits with compact, which keeps bits 0-14 and replaces
+ * the captured type by a single capture flag in bit 15. A compact move still works with from, to,
+ * piece and isCapture; expand restores the captured type from the board it is played on.
+ */
+public final class Move {
+    public static final int NONE = 0;
+
+    private static final int SQUARE_MASK = 0x3F;
+    private static final int TO_SHIFT = 6;
+    private static final int PIECE_SHIFT = 12;
+    private static final int CAPTURED_SHIFT = 15;
+    private static final int COMPACT_MASK = 0x7FFF;
+    private static final int COMPACT_CAPTURE = 1 << CAPTURED_SHIFT;
+
+    private Move() {
+    }
+
+    /**
+     * Packs a move into an int.
+     *
+     * @param from The origin square.
+     * @param to The destination square.
+     * @param piece The type of the moving piece.
+     * @param captured The type of the captured piece, or BitboardPosition.NO_PIECE for a quiet move.
+     * @return The packed move.
+     */
+    public static int encode(int from, int to, int piece, int captured) {
+        return from | (to << TO_SHIFT) | (piece << PIECE_SHIFT) | ((captured + 1) << CAPTURED_SHIFT);
+    }
+
+    /**
+     * Retrieves the origin square of a packed move.
+     *
+     * @param move The packed move.
+     * @return The square the piece moves from.
+     */
+    public static int from(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    /**
+     * Retrieves the destination square of a packed move.
+     *
+     * @param move The packed move.
+     * @return The square the piece moves to.
+     */
+    public static int to(int move) {
+        return (move >>> TO_SHIFT) & SQUARE_MASK;
+    }
+
+    /**
+     * Retrieves the type of the moving piece.
+     *
+     * @param move The packed move.
+     * @return The piece type, as defined in BitboardPosition.
+     */
+    public static int piece(int move) {
+        return (move >>> PIECE_SHIFT) & 7;
+    }
+
+    /**
+     * Retrieves the type of the captured piece.
+     *
+     * @param move The packed move.
+     * @return The captured piece type, or BitboardPosition.NO_PIECE for a quiet move.
+     */
+    public static int captured(int move) {
+        return ((move >>> CAPTURED_SHIFT) & 7) - 1;
+    }
+
+    /**
+     * Determines whether a packed move captures a piece.
+     *
+     * @param move The packed move.
+     * @return true if the move lands on an opponent's piece.
+     */
+    public static boolean isCapture(int move) {
+        return ((move >>> CAPTURED_SHIFT) & 7) != 0;
+    }
+
+    /**
+     * Shortens a packed move to 16 bits for storage, keeping only whether it captures and not
+     * what it captures.
+     *
+     * @param move The packed move.
+     * @return The compact move, between 0 and 0xFFFF.
+     */
+    public static int compact(int move) {
+        return (move & COMPACT_MASK) | (isCapture(move) ? COMPACT_CAPTURE : 0);
+    }
+
+    /**
+     * Restores a full packed move from its compact form.
+     *
+     * @param compact The compact move.
+     * @param captured The type of the piece on the destination square, or BitboardPosition.NO_PIECE.
+     * @return The packed move.
+     */
+    public static int expand(int compact, int captured) {
+        return (compact & COMPACT_MASK) | ((captured + 1) << CAPTURED_SHIFT);
+    }
+
+    /**
+     * Formats a packed move in MoveNotation, for example "Tor A8xA2" or "Ram B7-B6".
+     *
+     * @param move The packed move.
+     * @return A readable description of the move.
+     */
+    public static String toString(int move) {
+        return MoveNotation.format(move);
+    }
+
+    /**
+     * Formats a square the same way the board margins and move history do, for example "C5".
+     *
+     * @param square The square index.
+     * @return The column letter followed by the 1-indexed row number.
+     */
+    public static String squareName(int square) {
+        return MoveNotation.formatSquare(square);
+    }
+}
@@ -0,0 +1,172 @@
+package model;
+
+/**
+ * Generates moves on a BitboardPosition without allocating.
+ *
+ * Moves are written as packed ints (see Move) into a buffer owned by the caller, and every
+ * method returns the new number of moves in the buffer. A buffer of MAX_MOVES entries is always
+ * large enough for a whole position, so search code can allocate one buffer per ply up front
+ * and reuse it for the rest of the game.
+ *
+ * The rules are the same as the getMoves implementations of the Piece subclasses, except that
+ * destinations occupied by the moving side's own pieces are never produced.
+ *
+ * A capture-only mode produces just the moves onto the opponent's pieces, sorted by most
+ * valuable victim and then least valuable attacker, so a capture of the Sau always comes first.
+ * It is meant for the leaves of a search, where most moves are quiet and only the captures are
+ * of interest.
+ */
+public final class MoveGenerator {
+    public static final int MAX_MOVES = 256;
+    public static final int MAX_PIECE_MOVES = 16;
+
+    // Capture ordering weights by piece type; a Sau victim outweighs any other capture
+    private static final int[] VICTIM_ORDER = {1, 3, 5, 4, 100};
+    private static final int[] ATTACKER_ORDER = {1, 3, 5, 4, 6};
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Generates every move available to the side to move.
+     *
+     * @param position The position to generate moves for.
+     * @param moves The buffer the packed moves are written to, starting at index 0.
+     * @return The number of moves written.
+     */
+    public static int generate(BitboardPosition position, int[] moves) {
+        int count = 0;
+        long own = position.occupancy(position.getSideToMove());
+        while (own != 0) {
+            int square = Long.numberOfTrailingZeros(own);
+            own &= own - 1;
+            count = generateFrom(position, square, moves, count);
+        }
+        return count;
+    }
+
+    /**
+     * Generates every move of the piece standing on one square, whichever side owns it.
+     *
+     * @param position The position to generate moves for.
+     * @param from The square of the piece to move.
+     * @param moves The buffer the packed moves are written to.
+     * @param count The number of moves already in the buffer.
+     * @return The new number of moves in the buffer.
+     */
+    public static int generateFrom(BitboardPosition position, int from, int[] moves, int count) {
+        int type = position.pieceTypeAt(from);
+        if (type == BitboardPosition.NO_PIECE) {
+            return count;
+        }
+        long own = position.occupancy(position.ownerAt(from));
+        return addTargets(position, from, type, targets(position, from, type, position.occupancy()) & ~own, moves, count);
+    }
+
+    /**
+     * Generates the captures available to the side to move, most valuable victim first and,
+     * among captures of equal victims, least valuable attacker first.
+     *
+     * @param position The position to generate captures for.
+     * @param moves The buffer the packed moves are written to, starting at index 0.
+     * @return The number of captures written.
+     */
+    public static int generateCaptures(BitboardPosition position, int[] moves) {
+        int count = 0;
+        long own = position.occupancy(position.getSideToMove());
+        while (own != 0) {
+            int square = Long.numberOfTrailingZeros(own);
+            own &= own - 1;
+            count = generateCapturesFrom(position, square, moves, count);
+        }
+        // Insertion sort: there are rarely more than a handful of captures
+        for (int i = 1; i < count; i++) {
+            int move = moves[i];
+            int order = captureOrder(move);
+            int j = i - 1;
+            while (j >= 0 && captureOrder(moves[j]) < order) {
+                moves[j + 1] = moves[j];
+                j--;
+            }
+            moves[j + 1] = move;
+        }
+        return count;
+    }
+
+    /**
+     * Generates the captures of the piece standing on one square, whichever side owns it, in no
+     * particular order.
+     *
+     * @param position The position to generate captures for.
+     * @param from The square of the piece to move.
+     * @param moves The buffer the packed moves are written to.
+     * @param count The number of moves already in the buffer.
+     * @return The new number of moves in the buffer.
+     */
+    public static int generateCapturesFrom(BitboardPosition position, int from, int[] moves, int count) {
+        int type = position.pieceTypeAt(from);
+        if (type == BitboardPosition.NO_PIECE) {
+            return count;
+        }
+        long enemy = position.occupancy(position.ownerAt(from) ^ 1);
+        return addTargets(position, from, type, targets(position, from, type, position.occupancy()) & enemy, moves, count);
+    }
+
+    /**
+     * Ranks a capture for move ordering: the more valuable the victim and, after that, the less
+     * valuable the attacker, the higher the rank. Quiet moves rank 0.
+     *
+     * @param move A packed move.
+     * @return The rank, higher for captures to try first.
+     */
+    public static int captureOrder(int move) {
+        if (!Move.isCapture(move)) {
+            return 0;
+        }
+        return 1000 + VICTIM_ORDER[Move.captured(move)] * 16 - ATTACKER_ORDER[Move.piece(move)];
+    }
+
+    /**
+     * Finds every piece of either side that could move onto a square, given which squares are
+     * occupied. Passing an occupancy with pieces taken away lets sliding pieces behind them
+     * through, which is what a static exchange evaluation needs.
+     *
+     * @param position The position the pieces are taken from.
+     * @param square The target square.
+     * @param occupied The squares treated as occupied by the sliding pieces.
+     * @return The squares of the pieces attacking the target, restricted to occupied.
+     */
+    public static long attackersTo(BitboardPosition position, int square, long occupied) {
+        long rams = position.pieces(0, BitboardPosition.RAM) | position.pieces(1, BitboardPosition.RAM);
+        long descending = position.getDescendingRams();
+        long attackers = (Attacks.RAM_DESCENDING[square] & rams & ~descending)
+                | (Attacks.RAM_ASCENDING[square] & rams & descending)
+                | (Attacks.BIZ[square] & (position.pieces(0, BitboardPosition.BIZ) | position.pieces(1, BitboardPosition.BIZ)))
+                | (Attacks.SAU[square] & (position.pieces(0, BitboardPosition.SAU) | position.pieces(1, BitboardPosition.SAU)))
+                | (SlidingAttacks.tor(square, occupied) & (position.pieces(0, BitboardPosition.TOR) | position.pieces(1, BitboardPosition.TOR)))
+                | (SlidingAttacks.xor(square, occupied) & (position.pieces(0, BitboardPosition.XOR) | position.pieces(1, BitboardPosition.XOR)));
+        return attackers & occupied;
+    }
+
+    // The squares a piece attacks, ignoring who stands on them
+    private static long targets(BitboardPosition position, int from, int type, long occupied) {
+        return switch (type) {
+            case BitboardPosition.RAM -> Attacks.ram(from, (position.getDescendingRams() & (1L << from)) != 0);
+            case BitboardPosition.BIZ -> Attacks.BIZ[from];
+            case BitboardPosition.SAU -> Attacks.SAU[from];
+            case BitboardPosition.TOR -> SlidingAttacks.tor(from, occupied);
+            case BitboardPosition.XOR -> SlidingAttacks.xor(from, occupied);
+            default -> 0L;
+        };
+    }
+
+    private static int addTargets(BitboardPosition position, int from, int type, long targets,
+                                  int[] moves, int count) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves[count++] = Move.encode(from, to, type, position.pieceTypeAt(to));
+        }
+        return count;
+    }
+}
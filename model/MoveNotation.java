@@ -0,0 +1,155 @@
+package model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The notation used for moves in the moves history, saves and the server protocol: the name of
+ * the moving piece, its origin square, '-' for a quiet move or 'x' for a capture, and its
+ * destination square, for example "Ram A7-A6" or "Tor E8xE2". Squares are written as on the
+ * board margins, column letter then row number.
+ *
+ * Every entry names both squares, so a game can be replayed move by move from the initial
+ * position even when two pieces of the same kind could reach the same square. Earlier versions
+ * only wrote the piece and its destination ("Ram A6", "Tor x E2"); such entries do not parse
+ * here and are resolved by replay where they are still read (see archive.BulkConverter).
+ *
+ * All piece names have three letters, so every move is exactly NOTATION_LENGTH characters long.
+ * The parsers read a move where it lies, in a CharSequence or in a ByteBuffer, and return it as
+ * a compact move (see Move.compact) without creating any objects, so whole archives can be
+ * scanned without garbage. Parsing only checks the syntax; whether the move is legal is up to
+ * the caller, which typically looks it up among MoveGenerator's moves or expands it with
+ * Move.expand and plays it.
+ */
+public final class MoveNotation {
+    public static final int NOTATION_LENGTH = 9;
+
+    private MoveNotation() {
+    }
+
+    /**
+     * Formats a move.
+     *
+     * @param move The move, in full or compact form.
+     * @return The move in notation, for example "Ram A7-A6" or "Tor E8xE2".
+     */
+    public static String format(int move) {
+        char[] text = new char[NOTATION_LENGTH];
+        String name = BitboardPosition.PIECE_NAMES[Move.piece(move)];
+        name.getChars(0, 3, text, 0);
+        text[3] = ' ';
+        text[4] = columnLetter(Move.from(move));
+        text[5] = rowDigit(Move.from(move));
+        text[6] = Move.isCapture(move) ? 'x' : '-';
+        text[7] = columnLetter(Move.to(move));
+        text[8] = rowDigit(Move.to(move));
+        return new String(text);
+    }
+
+    /**
+     * Formats a square the same way the board margins do.
+     *
+     * @param square The square index.
+     * @return The column letter followed by the 1-indexed row number, for example "C5".
+     */
+    public static String formatSquare(int square) {
+        return new String(new char[]{columnLetter(square), rowDigit(square)});
+    }
+
+    /**
+     * Parses a whole string as a move.
+     *
+     * @param text The text, for example "Ram A7-A6".
+     * @return The compact move, or Move.NONE if the text is not a move in this notation.
+     */
+    public static int parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    /**
+     * Parses a move from part of a character sequence.
+     *
+     * @param text The text holding the move.
+     * @param start The index of the first character of the move.
+     * @param end The index just past the last character of the move.
+     * @return The compact move, or Move.NONE if the range is not a move in this notation.
+     */
+    public static int parse(CharSequence text, int start, int end) {
+        return decode(text, start, end);
+    }
+
+    /**
+     * Parses a move from ASCII bytes in a buffer, leaving the buffer's position and limit alone.
+     *
+     * @param buffer The buffer holding the move.
+     * @param start The index of the first byte of the move.
+     * @param end The index just past the last byte of the move.
+     * @return The compact move, or Move.NONE if the range is not a move in this notation.
+     */
+    public static int parse(ByteBuffer buffer, int start, int end) {
+        return decode(buffer, start, end);
+    }
+
+    /**
+     * Parses a square such as "B7", accepting the column letter in either case.
+     *
+     * @param text The text holding the square.
+     * @param index The index of the column letter.
+     * @return The square index, or -1 if there is no square at that index.
+     */
+    public static int parseSquare(CharSequence text, int index) {
+        if (index < 0 || index + 1 >= text.length()) {
+            return -1;
+        }
+        return square(text.charAt(index), text.charAt(index + 1));
+    }
+
+    // Shared by both parsers; the source is a CharSequence or a ByteBuffer, so nothing is wrapped
+    private static int decode(Object source, int start, int end) {
+        if (end - start != NOTATION_LENGTH || charAt(source, start + 3) != ' ') {
+            return Move.NONE;
+        }
+        int piece = pieceType(charAt(source, start), charAt(source, start + 1), charAt(source, start + 2));
+        int from = square(charAt(source, start + 4), charAt(source, start + 5));
+        char separator = charAt(source, start + 6);
+        int to = square(charAt(source, start + 7), charAt(source, start + 8));
+        if (piece == BitboardPosition.NO_PIECE || from < 0 || to < 0 || from == to
+                || (separator != '-' && separator != 'x')) {
+            return Move.NONE;
+        }
+        return Move.compact(Move.encode(from, to, piece, separator == 'x' ? piece : BitboardPosition.NO_PIECE));
+    }
+
+    private static char charAt(Object source, int index) {
+        if (source instanceof CharSequence text) {
+            return text.charAt(index);
+        }
+        return (char) (((ByteBuffer) source).get(index) & 0xFF);
+    }
+
+    private static int pieceType(char first, char second, char third) {
+        for (int type = 0; type < BitboardPosition.PIECE_TYPES; type++) {
+            String name = BitboardPosition.PIECE_NAMES[type];
+            if (name.charAt(0) == first && name.charAt(1) == second && name.charAt(2) == third) {
+                return type;
+            }
+        }
+        return BitboardPosition.NO_PIECE;
+    }
+
+    private static int square(char colLetter, char rowDigit) {
+        int col = Character.toUpperCase(colLetter) - 'A';
+        int row = rowDigit - '1';
+        if (col < 0 || col >= BitboardPosition.COLUMNS || row < 0 || row >= BitboardPosition.ROWS) {
+            return -1;
+        }
+        return BitboardPosition.square(col, row);
+    }
+
+    private static char columnLetter(int square) {
+        return (char) (BitboardPosition.col(square) + 'A');
+    }
+
+    private static char rowDigit(int square) {
+        return (char) (BitboardPosition.row(square) + '1');
+    }
+}
@@ -93,6 +93,15 @@ public abstract class Piece {
         return row;
     }
 
+    /**
+     * Retrieves the bitboard square index of this piece, as defined by BitboardPosition.
+     *
+     * @return The square index, row * 5 + column.
+     */
+    public int getSquare(){
+        return BitboardPosition.square(col, row);
+    }
+
     /**
      * Sets the column position of the piece on the game board.
      *
@@ -135,6 +144,9 @@ public abstract class Piece {
      * Computes all valid moves for this piece based on its specific movement rules
      * and the given board configuration.
      *
+     * This is a thin adapter over generateMoves, kept for callers that want intPair objects.
+     * Code that runs often should call generateMoves with a reusable buffer instead.
+     *
      * @param board A 2D array of Tile objects representing the game board. Each Tile
      *              may contain a piece or be empty. This parameter enables the piece
      *              to determine valid moves by analyzing the state of the board.
@@ -143,7 +155,94 @@ public abstract class Piece {
      *         of a valid destination based on the piece's movement rules and the board's state.
      *         Coded by Chan Ga Wai
      */
-    public abstract ArrayList<intPair> getMoves(Tile[][] board);
+    public ArrayList<intPair> getMoves(Tile[][] board) {
+        int[] buffer = new int[MoveGenerator.MAX_PIECE_MOVES];
+        int count = generateMoves(board, buffer, 0);
+        ArrayList<intPair> moves = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int to = Move.to(buffer[i]);
+            moves.add(new intPair(BitboardPosition.col(to), BitboardPosition.row(to)));
+        }
+        return moves;
+    }
+
+    /**
+     * Writes all valid moves for this piece into a caller-owned buffer as packed ints (see Move).
+     * Destinations occupied by the piece's own side are not produced. Nothing is allocated,
+     * so the same buffer can be reused on every click and every repaint.
+     *
+     * @param board A 2D array of Tile objects representing the game board.
+     * @param moves The buffer the packed moves are written to. MoveGenerator.MAX_PIECE_MOVES
+     *              free entries are always enough for a single piece.
+     * @param count The number of moves already in the buffer.
+     * @return The new number of moves in the buffer.
+     */
+    public abstract int generateMoves(Tile[][] board, int[] moves, int count);
+
+    /**
+     * Appends a single move to a packed move buffer if the destination is on the board
+     * and not occupied by a piece of the same owner.
+     *
+     * @param board The game board.
+     * @param type The bitboard piece type of this piece.
+     * @param x The column of the destination.
+     * @param y The row of the destination.
+     * @param moves The buffer the packed move is written to.
+     * @param count The number of moves already in the buffer.
+     * @return The new number of moves in the buffer.
+     */
+    protected int addMove(Tile[][] board, int type, int x, int y, int[] moves, int count) {
+        if (!isValidTile(x, y)) {
+            return count;
+        }
+        Piece target = board[x][y].getPiece();
+        if (target != null && target.getOwner() == getOwner()) {
+            return count;
+        }
+        int captured = target == null ? BitboardPosition.NO_PIECE : BitboardPosition.typeOf(target.getName());
+        moves[count] = Move.encode(BitboardPosition.square(col, row), BitboardPosition.square(x, y), type, captured);
+        return count + 1;
+    }
+
+    /**
+     * Collects which of the given squares are occupied on the Tile[][] board, so that a
+     * sliding piece only has to look at the tiles on its own lines.
+     *
+     * @param board The game board.
+     * @param squares A mask of the squares to inspect.
+     * @return The subset of those squares that hold a piece.
+     */
+    protected long occupancy(Tile[][] board, long squares) {
+        long occupied = 0L;
+        while (squares != 0) {
+            int square = Long.numberOfTrailingZeros(squares);
+            squares &= squares - 1;
+            if (board[BitboardPosition.col(square)][BitboardPosition.row(square)].isOccupied()) {
+                occupied |= 1L << square;
+            }
+        }
+        return occupied;
+    }
+
+    /**
+     * Appends one move per square in a destination mask, typically a row of one of the
+     * precomputed tables in Attacks, skipping squares held by a piece of the same owner.
+     *
+     * @param board The game board.
+     * @param type The bitboard piece type of this piece.
+     * @param targets A mask of destination squares.
+     * @param moves The buffer the packed moves are written to.
+     * @param count The number of moves already in the buffer.
+     * @return The new number of moves in the buffer.
+     */
+    protected int addMoves(Tile[][] board, int type, long targets, int[] moves, int count) {
+        while (targets != 0) {
+            int square = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            count = addMove(board, type, BitboardPosition.col(square), BitboardPosition.row(square), moves, count);
+        }
+        return count;
+    }
 
     /**
      * Determines if the specified tile, identified by its coordinates (x, y),
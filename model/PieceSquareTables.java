@@ -0,0 +1,145 @@
+package model;
+
+/**
+ * Material values and piece-square tables, the static part of the evaluation that
+ * BitboardPosition keeps up to date incrementally (see BitboardPosition.getScore).
+ *
+ * Every piece is worth its material value plus a bonus for the square it stands on, in centi-Ram
+ * units. The tables below are written from P1's side of the board, with row 0 (P2's back row) at
+ * the top; P2 uses the same tables mirrored top to bottom. Placing or removing a piece then
+ * changes the score by a single table entry, and moving one by two, so the score never has to be
+ * recomputed from the whole board.
+ *
+ * Every Tor and Xor transforms at once, so SWAP holds, per side and square, the change in score
+ * when a Tor there becomes an Xor. The transformation of the whole board is then one lookup per
+ * transformed piece, the same way Zobrist.XOR_TOR_SWAP updates the key.
+ */
+public final class PieceSquareTables {
+    /**
+     * The material value of each piece type. The Sau has none because losing it ends the game.
+     * The Tor is valued above the Xor because orthogonal lines are longer than diagonal ones on
+     * the narrow 5x8 board.
+     */
+    public static final int[] PIECE_VALUES = {100, 300, 450, 350, 0};
+
+    private static final int[][] TABLES = {
+            // Ram: pushing forward, most of all in the middle
+            {
+                    30, 30, 30, 30, 30,
+                    25, 28, 30, 28, 25,
+                    18, 20, 22, 20, 18,
+                    10, 14, 16, 14, 10,
+                    5, 8, 10, 8, 5,
+                    0, 3, 5, 3, 0,
+                    0, 0, 0, 0, 0,
+                    0, 0, 0, 0, 0
+            },
+            // Biz: jumps reach the most squares from the centre
+            {
+                    -20, -10, -5, -10, -20,
+                    -10, 0, 5, 0, -10,
+                    -5, 5, 10, 5, -5,
+                    -5, 8, 15, 8, -5,
+                    -5, 8, 15, 8, -5,
+                    -5, 5, 10, 5, -5,
+                    -10, 0, 5, 0, -10,
+                    -20, -10, -5, -10, -20
+            },
+            // Tor: central columns, and the row in front of the opposing Rams
+            {
+                    5, 5, 5, 5, 5,
+                    10, 12, 12, 12, 10,
+                    0, 3, 5, 3, 0,
+                    0, 3, 5, 3, 0,
+                    0, 3, 5, 3, 0,
+                    0, 3, 5, 3, 0,
+                    0, 0, 0, 0, 0,
+                    -5, 0, 0, 0, -5
+            },
+            // Xor: the long diagonals through the centre
+            {
+                    -10, -5, -5, -5, -10,
+                    -5, 5, 5, 5, -5,
+                    -5, 5, 10, 5, -5,
+                    -5, 8, 12, 8, -5,
+                    -5, 8, 12, 8, -5,
+                    -5, 5, 10, 5, -5,
+                    -5, 5, 5, 5, -5,
+                    -10, -5, -5, -5, -10
+            },
+            // Sau: safest on its own back rows, away from the centre
+            {
+                    -30, -30, -30, -30, -30,
+                    -30, -30, -30, -30, -30,
+                    -25, -25, -25, -25, -25,
+                    -20, -20, -20, -20, -20,
+                    -15, -15, -15, -15, -15,
+                    -10, -10, -10, -10, -10,
+                    0, 0, -5, 0, 0,
+                    5, 10, 5, 10, 5
+            }
+    };
+
+    /**
+     * The score of a piece of each side and type on each square, from P1's point of view: P1's
+     * pieces count positive and P2's negative.
+     */
+    static final int[][][] SCORES = new int[2][BitboardPosition.PIECE_TYPES][BitboardPosition.SQUARES];
+    static final int[][] SWAP = new int[2][BitboardPosition.SQUARES];
+
+    static {
+        for (int type = 0; type < BitboardPosition.PIECE_TYPES; type++) {
+            for (int square = 0; square < BitboardPosition.SQUARES; square++) {
+                int mirrored = BitboardPosition.square(BitboardPosition.col(square),
+                        BitboardPosition.ROWS - 1 - BitboardPosition.row(square));
+                SCORES[0][type][square] = PIECE_VALUES[type] + TABLES[type][square];
+                SCORES[1][type][square] = -(PIECE_VALUES[type] + TABLES[type][mirrored]);
+            }
+        }
+
+        // Turning a Tor into an Xor on the same square changes the score by this much
+        for (int side = 0; side < 2; side++) {
+            for (int square = 0; square < BitboardPosition.SQUARES; square++) {
+                SWAP[side][square] = SCORES[side][BitboardPosition.XOR][square]
+                        - SCORES[side][BitboardPosition.TOR][square];
+            }
+        }
+    }
+
+    private PieceSquareTables() {
+    }
+
+    /**
+     * Retrieves the value of a piece on a square from its owner's point of view.
+     *
+     * @param side The side owning the piece.
+     * @param type The piece type.
+     * @param square The square.
+     * @return The material value plus the square bonus.
+     */
+    public static int value(int side, int type, int square) {
+        return side == 0 ? SCORES[0][type][square] : -SCORES[1][type][square];
+    }
+
+    /**
+     * Computes the score of a position from scratch. The incrementally maintained score returned
+     * by BitboardPosition.getScore must always equal this value; it is mainly useful for checking
+     * that.
+     *
+     * @param position The position to score.
+     * @return The material and square balance from P1's point of view.
+     */
+    public static int compute(BitboardPosition position) {
+        int score = 0;
+        for (int side = 0; side < 2; side++) {
+            for (int type = 0; type < BitboardPosition.PIECE_TYPES; type++) {
+                long bits = position.pieces(side, type);
+                while (bits != 0) {
+                    score += SCORES[side][type][Long.numberOfTrailingZeros(bits)];
+                    bits &= bits - 1;
+                }
+            }
+        }
+        return score;
+    }
+}
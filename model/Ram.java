@@ -1,7 +1,5 @@
 package model;
 
-import java.util.ArrayList;
-
 /**
  * Represents the "Ram" piece in a custom board game. The Ram piece has distinctive
  * movement mechanics, moving vertically based on a promotion multiplier. This multiplier
@@ -61,6 +59,25 @@ public class Ram extends Piece {
         return getRow() == 7;
     }
 
+    /**
+     * Retrieves the promotion multiplier of this Ram. A multiplier of 1 means the Ram moves
+     * towards the top row, and -1 means it moves towards the bottom row.
+     *
+     * @return The current promotion multiplier.
+     */
+    public int getPromotionMultiplier() {
+        return promotionMultiplier;
+    }
+
+    /**
+     * Sets the promotion multiplier of this Ram, for example when a move is taken back.
+     *
+     * @param promotionMultiplier 1 to move towards the top row, -1 to move towards the bottom row.
+     */
+    public void setPromotionMultiplier(int promotionMultiplier) {
+        this.promotionMultiplier = promotionMultiplier;
+    }
+
     /**
      * Represents the "Ram" piece in a custom board game.
      * The Ram piece has unique movement rules where it moves vertically based on a promotion multiplier,
@@ -75,9 +92,7 @@ public class Ram extends Piece {
      * Coded by Mishal Mann Nair
      */
     @Override
-    public ArrayList<intPair> getMoves(Tile[][] board) {
-        ArrayList<intPair> moves = new ArrayList<>();
-
+    public int generateMoves(Tile[][] board, int[] moves, int count) {
         // Update promotionMultiplier only once when reaching the edge
         if (isTopRow() && promotionMultiplier > 0) {
             promotionMultiplier = -1;
@@ -87,15 +102,8 @@ public class Ram extends Piece {
             promotionMultiplier = 1;
         }
 
-        // Calculate the next move based on the updated promotionMultiplier
-        int row = getRow() - promotionMultiplier;
-        int col = getCol();
-
-        // Ensure the move is within bounds
-        if (isValidTile(col, row)) {
-            moves.add(new intPair(col, row));
-        }
-
-        return moves;
+        // Look up the next tile based on the updated promotionMultiplier
+        long target = Attacks.ram(getSquare(), promotionMultiplier < 0);
+        return addMoves(board, BitboardPosition.RAM, target, moves, count);
     }
 }
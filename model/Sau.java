@@ -1,7 +1,5 @@
 package model;
 
-import java.util.ArrayList;
-
 /**
  * Represents the Sau game piece, a specific type of piece in the board game.
  * The Sau piece has its own unique movement rules, allowing it to move in all
@@ -22,30 +20,17 @@ public class Sau extends Piece {
         this.name = "Sau";
     }
 
+    /**
+     * Writes every valid move of the Sau into a packed move buffer. The Sau steps one tile
+     * in any of the eight directions, onto an empty tile or an opponent's piece.
+     *
+     * @param board The current state of the game board.
+     * @param moves The buffer the packed moves are written to.
+     * @param count The number of moves already in the buffer.
+     * @return The new number of moves in the buffer.
+     */
     @Override
-    public ArrayList<intPair> getMoves(Tile[][] board) {
-        ArrayList<intPair> moves = new ArrayList<>();
-        int[][] directions = {
-                {1, 0},  // north-east
-                {1, 1},  // east
-                {0, 1},   // south-east
-                {-1, 1}, // south-west
-                {-1, 0}, // west
-                {-1, -1},// north-west
-                {0, -1}, // north-east
-                {1, -1}  // east
-        };
-
-        for (int[] direction : directions) {
-            int x = getCol() + direction[0];
-            int y = getRow() + direction[1];
-            if (isValidTile(x, y) && board[x][y].getPiece() == null) {
-                moves.add(new intPair(x, y));
-            }
-            else if (isValidTile(x, y) && board[x][y].getPiece().getOwner() != (getOwner())) {
-                moves.add(new intPair(x, y));
-            }
-        }
-        return moves;
+    public int generateMoves(Tile[][] board, int[] moves, int count) {
+        return addMoves(board, BitboardPosition.SAU, Attacks.SAU[getSquare()], moves, count);
     }
 }
\ No newline at end of file
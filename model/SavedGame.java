@@ -0,0 +1,233 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A saved game as plain data, independent of any GameState: the pieces on the board, the turn
+ * counters, the move log and the readable moves history.
+ *
+ * SaveLoadManager reads and writes both save formats through this class, so a file can be
+ * parsed, checked and converted on any thread without touching the game being played. A saved
+ * game is applied to a GameState with applyTo, or to a BitboardPosition with placeOn.
+ *
+ * Each piece is packed into an int: bits 0-5 hold the square, bits 6-8 the piece type, bit 9 the
+ * owner (0 for P1) and bit 10 whether a Ram travels towards row 8. Bits 6-10 are the flags byte
+ * of the binary save format.
+ */
+public class SavedGame {
+    private final int[] pieces;
+    private final int turnCount;
+    private final int currentTurn;
+    private final int[] moves;
+    private final List<String> movesHistory;
+
+    /**
+     * Creates a saved game.
+     *
+     * @param pieces The packed pieces, see pieceCode.
+     * @param turnCount The turn counter.
+     * @param currentTurn The player to move, 0 for P1 and 1 for P2.
+     * @param moves The move log in compact form (see Move.compact), possibly empty.
+     * @param movesHistory The readable moves history.
+     */
+    public SavedGame(int[] pieces, int turnCount, int currentTurn, int[] moves, List<String> movesHistory) {
+        this.pieces = pieces;
+        this.turnCount = turnCount;
+        this.currentTurn = currentTurn;
+        this.moves = moves;
+        this.movesHistory = movesHistory;
+    }
+
+    /**
+     * Captures the current state of a game.
+     *
+     * @param gameState The game to capture.
+     * @return A saved game holding a copy of the game's pieces, counters, move log and history.
+     */
+    public static SavedGame of(GameState gameState) {
+        int[] moves = new int[gameState.getMoveLogSize()];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = gameState.getLoggedMove(i);
+        }
+        return of(gameState.getBitboards(), moves, new ArrayList<>(gameState.getMovesHistory()));
+    }
+
+    /**
+     * Captures a bitboard position together with the moves that led to it.
+     *
+     * @param position The position, whose pieces, Ram directions and turn counters are copied.
+     * @param moves The move log in compact form. The array is kept, not copied.
+     * @param movesHistory The readable moves history. The list is kept, not copied.
+     * @return The saved game.
+     */
+    public static SavedGame of(BitboardPosition position, int[] moves, List<String> movesHistory) {
+        int[] pieces = new int[Long.bitCount(position.occupancy())];
+        int count = 0;
+        for (long occupied = position.occupancy(); occupied != 0; occupied &= occupied - 1) {
+            int square = Long.numberOfTrailingZeros(occupied);
+            boolean descending = (position.getDescendingRams() & (1L << square)) != 0;
+            pieces[count++] = pieceCode(square, position.pieceTypeAt(square), position.ownerAt(square), descending);
+        }
+        return new SavedGame(pieces, position.getTurnCount(), position.getSideToMove(), moves, movesHistory);
+    }
+
+    /**
+     * Packs a piece into an int.
+     *
+     * @param square The square the piece stands on.
+     * @param type The piece type, as defined in BitboardPosition.
+     * @param side The owner, 0 for P1 and 1 for P2.
+     * @param descending For Rams, whether the Ram travels towards row 8.
+     * @return The packed piece.
+     */
+    public static int pieceCode(int square, int type, int side, boolean descending) {
+        return square | type << 6 | side << 9 | (descending ? 1 << 10 : 0);
+    }
+
+    /**
+     * @param code A packed piece.
+     * @return The square the piece stands on.
+     */
+    public static int square(int code) {
+        return code & 0x3F;
+    }
+
+    /**
+     * @param code A packed piece.
+     * @return The piece type.
+     */
+    public static int type(int code) {
+        return (code >>> 6) & 7;
+    }
+
+    /**
+     * @param code A packed piece.
+     * @return The owner, 0 for P1 and 1 for P2.
+     */
+    public static int side(int code) {
+        return (code >>> 9) & 1;
+    }
+
+    /**
+     * @param code A packed piece.
+     * @return true if the piece is a Ram travelling towards row 8.
+     */
+    public static boolean isDescending(int code) {
+        return (code & 1 << 10) != 0;
+    }
+
+    /**
+     * @return The number of pieces on the board.
+     */
+    public int getPieceCount() {
+        return pieces.length;
+    }
+
+    /**
+     * @param index The index of the piece.
+     * @return The packed piece.
+     */
+    public int getPiece(int index) {
+        return pieces[index];
+    }
+
+    /**
+     * @return The turn counter.
+     */
+    public int getTurnCount() {
+        return turnCount;
+    }
+
+    /**
+     * @return The player to move, 0 for P1 and 1 for P2.
+     */
+    public int getCurrentTurn() {
+        return currentTurn;
+    }
+
+    /**
+     * @return The number of moves in the move log. Text saves have no move log.
+     */
+    public int getMoveCount() {
+        return moves.length;
+    }
+
+    /**
+     * @param index The index of the move, 0 being the first move of the game.
+     * @return The move in compact form.
+     */
+    public int getMove(int index) {
+        return moves[index];
+    }
+
+    /**
+     * @return The readable moves history, one entry per move.
+     */
+    public List<String> getMovesHistory() {
+        return movesHistory;
+    }
+
+    /**
+     * Replaces the pieces, board, turn counters, moves history and move log of a game state with
+     * this saved game.
+     *
+     * @param gameState The game state to load into.
+     */
+    public void applyTo(GameState gameState) {
+        ArrayList<Piece> loadedPieces = new ArrayList<>(pieces.length);
+        for (int code : pieces) {
+            Player owner = gameState.getPlayer(side(code) == 0 ? "P1" : "P2");
+            int col = BitboardPosition.col(square(code));
+            int row = BitboardPosition.row(square(code));
+            Piece piece = switch (type(code)) {
+                case BitboardPosition.RAM -> new Ram(col, row, owner);
+                case BitboardPosition.BIZ -> new Biz(col, row, owner);
+                case BitboardPosition.TOR -> new Tor(col, row, owner);
+                case BitboardPosition.XOR -> new Xor(col, row, owner);
+                default -> new Sau(col, row, owner);
+            };
+            if (piece instanceof Ram ram) {
+                ram.setPromotionMultiplier(isDescending(code) ? -1 : 1);
+            }
+            loadedPieces.add(piece);
+        }
+
+        gameState.getPieces().clear();
+        gameState.getPieces().addAll(loadedPieces);
+        gameState.setTurnCount(turnCount);
+        gameState.setCurrentTurn(currentTurn);
+        gameState.getMovesHistory().clear();
+        gameState.getMovesHistory().addAll(movesHistory);
+
+        Tile[][] board = gameState.getBoard();
+        for (int i = 0; i < gameState.columns; i++) {
+            for (int j = 0; j < gameState.rows; j++) {
+                board[i][j].setPiece(null);
+            }
+        }
+        for (Piece piece : loadedPieces) {
+            board[piece.getCol()][piece.getRow()].setPiece(piece);
+        }
+        gameState.syncBitboards();
+        gameState.setMoveLog(moves, moves.length);
+    }
+
+    /**
+     * Sets up a bitboard position with this saved game's pieces and turn counters. Rams on the
+     * first or last row are turned around the same way BitboardPosition.setFrom does.
+     *
+     * @param position The position to overwrite.
+     */
+    public void placeOn(BitboardPosition position) {
+        position.clear();
+        for (int code : pieces) {
+            int square = square(code);
+            int row = BitboardPosition.row(square);
+            boolean descending = row == 0 || (row != BitboardPosition.ROWS - 1 && isDescending(code));
+            position.put(side(code), type(code), square, descending);
+        }
+        position.setSideToMove(currentTurn);
+        position.setTurnCount(turnCount);
+    }
+}
@@ -0,0 +1,105 @@
+package model;
+
+/**
+ * Constant-time destination masks for the sliding pieces, the Tor and the Xor.
+ *
+ * For every square and each of the eight directions a ray table holds every square the ray
+ * passes through up to the board edge. The squares a slider reaches along one ray are the ray
+ * itself minus whatever lies beyond the first blocker, and the part beyond the blocker is
+ * simply the ray of the same direction starting from the blocker. Finding the first blocker is
+ * a single numberOfTrailingZeros or numberOfLeadingZeros on the masked occupancy, because square
+ * indices grow along rays that point down or right and shrink along the others.
+ *
+ * The tables are 8 x 40 longs, so both Tor and Xor lookups stay in cache for the whole game
+ * even though GameState.switchXorTor keeps turning one into the other.
+ *
+ * The returned masks include the first blocker on every ray, whichever side owns it;
+ * callers mask out their own pieces.
+ */
+public final class SlidingAttacks {
+    // Directions whose square index grows along the ray come first
+    private static final int EAST = 0;
+    private static final int SOUTH = 1;
+    private static final int SOUTH_EAST = 2;
+    private static final int SOUTH_WEST = 3;
+    private static final int WEST = 4;
+    private static final int NORTH = 5;
+    private static final int NORTH_WEST = 6;
+    private static final int NORTH_EAST = 7;
+
+    private static final int[][] STEPS = {
+            {1, 0}, {0, 1}, {1, 1}, {-1, 1},
+            {-1, 0}, {0, -1}, {-1, -1}, {1, -1}
+    };
+
+    private static final long[][] RAYS = new long[STEPS.length][BitboardPosition.SQUARES];
+
+    /** Every square on the same row or column as each square, which is the Tor's empty-board reach. */
+    public static final long[] TOR_LINES = new long[BitboardPosition.SQUARES];
+    /** Every square on the same diagonals as each square, which is the Xor's empty-board reach. */
+    public static final long[] XOR_LINES = new long[BitboardPosition.SQUARES];
+
+    static {
+        for (int square = 0; square < BitboardPosition.SQUARES; square++) {
+            for (int direction = 0; direction < STEPS.length; direction++) {
+                int col = BitboardPosition.col(square) + STEPS[direction][0];
+                int row = BitboardPosition.row(square) + STEPS[direction][1];
+                long ray = 0L;
+                while (col >= 0 && col < BitboardPosition.COLUMNS && row >= 0 && row < BitboardPosition.ROWS) {
+                    ray |= 1L << BitboardPosition.square(col, row);
+                    col += STEPS[direction][0];
+                    row += STEPS[direction][1];
+                }
+                RAYS[direction][square] = ray;
+            }
+            TOR_LINES[square] = RAYS[EAST][square] | RAYS[SOUTH][square] | RAYS[WEST][square] | RAYS[NORTH][square];
+            XOR_LINES[square] = RAYS[SOUTH_EAST][square] | RAYS[SOUTH_WEST][square]
+                    | RAYS[NORTH_WEST][square] | RAYS[NORTH_EAST][square];
+        }
+    }
+
+    private SlidingAttacks() {
+    }
+
+    /**
+     * Computes every square a Tor on the given square reaches, moving orthogonally.
+     *
+     * @param square The square the Tor stands on.
+     * @param occupied Every occupied square on the board.
+     * @return The reachable squares, including the first blocker on each ray.
+     */
+    public static long tor(int square, long occupied) {
+        return ascending(EAST, square, occupied) | ascending(SOUTH, square, occupied)
+                | descending(WEST, square, occupied) | descending(NORTH, square, occupied);
+    }
+
+    /**
+     * Computes every square an Xor on the given square reaches, moving diagonally.
+     *
+     * @param square The square the Xor stands on.
+     * @param occupied Every occupied square on the board.
+     * @return The reachable squares, including the first blocker on each ray.
+     */
+    public static long xor(int square, long occupied) {
+        return ascending(SOUTH_EAST, square, occupied) | ascending(SOUTH_WEST, square, occupied)
+                | descending(NORTH_WEST, square, occupied) | descending(NORTH_EAST, square, occupied);
+    }
+
+    private static long ascending(int direction, int square, long occupied) {
+        long ray = RAYS[direction][square];
+        long blockers = ray & occupied;
+        if (blockers == 0) {
+            return ray;
+        }
+        return ray ^ RAYS[direction][Long.numberOfTrailingZeros(blockers)];
+    }
+
+    private static long descending(int direction, int square, long occupied) {
+        long ray = RAYS[direction][square];
+        long blockers = ray & occupied;
+        if (blockers == 0) {
+            return ray;
+        }
+        return ray ^ RAYS[direction][63 - Long.numberOfLeadingZeros(blockers)];
+    }
+}
@@ -1,7 +1,5 @@
 package model;
 
-import java.util.ArrayList;
-
 /**
  * Represents the "Tor" piece in the game, inheriting from the abstract "Piece" class.
  * The "Tor" piece moves in a straight line across the board in four diagonal directions:
@@ -29,32 +27,16 @@ public class Tor extends Piece {
      *
      * @param board The current state of the game board, represented as a 2D array of Tiles,
      *              where each Tile may or may not contain a Piece.
-     * @return An ArrayList of intPair objects, where each intPair represents the coordinates
-     *         (column and row indices) of a valid tile the "Tor" can move to.
+     * @param moves The buffer the packed moves are written to.
+     * @param count The number of moves already in the buffer.
+     * @return The new number of moves in the buffer, one packed move per valid tile
+     *         the "Tor" can move to.
      *         Coded by Harrish Panicker
      */
     @Override
-    public ArrayList<intPair> getMoves(Tile[][] board) {
-        ArrayList<intPair> moves = new ArrayList<>();
-        int[][] directions = {
-                {1, 0},  // north-east
-                {0, -1}, // south-east
-                {-1, 0}, // south-west
-                {0, 1}  // north-west
-        };
-
-        for (int[] direction : directions) {
-            int x = getCol() + direction[0];
-            int y = getRow() + direction[1];
-            while (isValidTile(x, y) && board[x][y].getPiece() == null) {
-                moves.add(new intPair(x, y));
-                x += direction[0];
-                y += direction[1];
-            }
-            if (isValidTile(x, y) && board[x][y].getPiece().getOwner() != getOwner()) {
-                moves.add(new intPair(x, y));
-            }
-        }
-        return moves;
+    public int generateMoves(Tile[][] board, int[] moves, int count) {
+        int square = getSquare();
+        long occupied = occupancy(board, SlidingAttacks.TOR_LINES[square]);
+        return addMoves(board, BitboardPosition.TOR, SlidingAttacks.tor(square, occupied), moves, count);
     }
 }
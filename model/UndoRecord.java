@@ -0,0 +1,59 @@
+package model;
+
+/**
+ * Holds what GameState needs to take back one move without rebuilding the board.
+ *
+ * Only the information a move destroys is kept: the two squares involved, the piece that was
+ * captured (if any) and whether the move triggered the Xor/Tor transformation. Everything else,
+ * such as the piece that moved and the direction of a Ram, is read back from the board and the
+ * bitboards when the move is undone.
+ */
+public class UndoRecord {
+    private final int from;
+    private final int to;
+    private final Piece captured;
+    private final boolean transformed;
+
+    /**
+     * Creates an undo record for a move that has just been played.
+     *
+     * @param from The square the piece moved from.
+     * @param to The square the piece moved to.
+     * @param captured The captured piece, or null for a quiet move.
+     * @param transformed Whether the move triggered the Xor/Tor transformation.
+     */
+    public UndoRecord(int from, int to, Piece captured, boolean transformed) {
+        this.from = from;
+        this.to = to;
+        this.captured = captured;
+        this.transformed = transformed;
+    }
+
+    /**
+     * @return The square the piece moved from.
+     */
+    public int getFrom() {
+        return from;
+    }
+
+    /**
+     * @return The square the piece moved to.
+     */
+    public int getTo() {
+        return to;
+    }
+
+    /**
+     * @return The captured piece, or null if the move did not capture.
+     */
+    public Piece getCaptured() {
+        return captured;
+    }
+
+    /**
+     * @return true if the move triggered the Xor/Tor transformation.
+     */
+    public boolean isTransformed() {
+        return transformed;
+    }
+}
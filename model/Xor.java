@@ -1,7 +1,5 @@
 package model;
 
-import java.util.ArrayList;
-
 /**
  * The Xor class represents a specific type of game piece in a custom board game.
  * It extends the abstract `Piece` class and implements its unique movement rules.
@@ -31,32 +29,15 @@ public class Xor extends Piece {
      *
      * @param board A 2D array of Tile objects representing the current state of the game board.
      *              Each Tile may be empty or occupied by a piece.
-     * @return An ArrayList containing intPair objects, where each intPair represents a valid move
-     *         as a pair of coordinates (x, y) on the board.
+     * @param moves The buffer the packed moves are written to.
+     * @param count The number of moves already in the buffer.
+     * @return The new number of moves in the buffer, one packed move per valid tile.
      *         Coded by Harrish Panicker
      */
     @Override
-    public ArrayList<intPair> getMoves(Tile[][] board) {
-        ArrayList<intPair> moves = new ArrayList<>();
-        int[][] directions = {
-                {1, 1},  // north-east
-                {1, -1}, // south-east
-                {-1, -1}, // south-west
-                {-1, 1}  // north-west
-        };
-
-        for (int[] direction : directions) {
-            int x = getCol() + direction[0];
-            int y = getRow() + direction[1];
-            while (isValidTile(x, y) && board[x][y].getPiece() == null) {
-                moves.add(new intPair(x, y));
-                x += direction[0];
-                y += direction[1];
-            }
-            if (isValidTile(x, y) && board[x][y].getPiece().getOwner() != getOwner()) {
-                moves.add(new intPair(x, y));
-            }
-        }
-        return moves;
+    public int generateMoves(Tile[][] board, int[] moves, int count) {
+        int square = getSquare();
+        long occupied = occupancy(board, SlidingAttacks.XOR_LINES[square]);
+        return addMoves(board, BitboardPosition.XOR, SlidingAttacks.xor(square, occupied), moves, count);
     }
 }
\ No newline at end of file
@@ -0,0 +1,90 @@
+package model;
+
+/**
+ * Random 64-bit keys used to hash Kwazam positions (Zobrist hashing).
+ *
+ * A position key is the XOR of one key per piece (side, type and square), one key per Ram that
+ * is travelling towards row 8, a key when P2 is to move and a key when the turn counter is even,
+ * which is the phase of the two-turn Xor/Tor cycle. Because XOR is its own inverse, each change
+ * to the position updates the key with a couple of XORs instead of rehashing the board.
+ *
+ * The keys come from a fixed seed so that the same position hashes to the same value in every
+ * run, which keeps keys stored on disk meaningful.
+ */
+public final class Zobrist {
+    static final long[][][] PIECES = new long[2][BitboardPosition.PIECE_TYPES][BitboardPosition.SQUARES];
+    static final long[] DESCENDING_RAM = new long[BitboardPosition.SQUARES];
+    static final long[][] XOR_TOR_SWAP = new long[2][BitboardPosition.SQUARES];
+    static final long SIDE_TO_MOVE;
+    static final long EVEN_TURN;
+
+    static {
+        long seed = 0x4B57415A414D4CL;
+        for (int side = 0; side < 2; side++) {
+            for (int type = 0; type < BitboardPosition.PIECE_TYPES; type++) {
+                for (int square = 0; square < BitboardPosition.SQUARES; square++) {
+                    seed += 0x9E3779B97F4A7C15L;
+                    PIECES[side][type][square] = mix(seed);
+                }
+            }
+        }
+        for (int square = 0; square < BitboardPosition.SQUARES; square++) {
+            seed += 0x9E3779B97F4A7C15L;
+            DESCENDING_RAM[square] = mix(seed);
+        }
+        seed += 0x9E3779B97F4A7C15L;
+        SIDE_TO_MOVE = mix(seed);
+        seed += 0x9E3779B97F4A7C15L;
+        EVEN_TURN = mix(seed);
+
+        // Turning a Tor into an Xor on the same square, or back, is a single XOR with this key
+        for (int side = 0; side < 2; side++) {
+            for (int square = 0; square < BitboardPosition.SQUARES; square++) {
+                XOR_TOR_SWAP[side][square] = PIECES[side][BitboardPosition.TOR][square]
+                        ^ PIECES[side][BitboardPosition.XOR][square];
+            }
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Computes the key of a position from scratch. The incrementally maintained key returned by
+     * BitboardPosition.getKey must always equal this value; it is mainly useful for checking that.
+     *
+     * @param position The position to hash.
+     * @return The 64-bit Zobrist key of the position.
+     */
+    public static long compute(BitboardPosition position) {
+        long key = 0L;
+        for (int side = 0; side < 2; side++) {
+            for (int type = 0; type < BitboardPosition.PIECE_TYPES; type++) {
+                long bits = position.pieces(side, type);
+                while (bits != 0) {
+                    key ^= PIECES[side][type][Long.numberOfTrailingZeros(bits)];
+                    bits &= bits - 1;
+                }
+            }
+        }
+        long rams = position.getDescendingRams();
+        while (rams != 0) {
+            key ^= DESCENDING_RAM[Long.numberOfTrailingZeros(rams)];
+            rams &= rams - 1;
+        }
+        if (position.getSideToMove() != 0) {
+            key ^= SIDE_TO_MOVE;
+        }
+        if ((position.getTurnCount() & 1) == 0) {
+            key ^= EVEN_TURN;
+        }
+        return key;
+    }
+
+    // SplitMix64 finaliser
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,204 @@
+package server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A headless server that hosts many games at once over a line-based protocol on the loopback
+ * interface. Every connection is one GameSession (see there for the commands), played on its
+ * own thread with plain blocking socket I/O.
+ *
+ * Sessions run on virtual threads when the JVM has them (Java 21 and later), so tens of
+ * thousands of mostly idle games cost little more than their heap. On older JVMs the server
+ * falls back to a cached pool of daemon platform threads with a small stack. The executor is
+ * looked up by reflection so that the code still compiles for Java 17.
+ *
+ * Per-session state is kept small: a GameState and GameController, a 256-byte read buffer and
+ * a 128-byte line buffer. The time spent executing each MOVE command is recorded in a shared
+ * LatencyHistogram, reported by the STATS command and printed when the server shuts down.
+ * SelectorServer serves the same protocol from a few event-loop threads instead.
+ *
+ * Usage: java server.GameServer [port]
+ */
+public class GameServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 5050;
+    public static final int MAX_LINE = 128;
+
+    private static final int READ_BUFFER = 256;
+    private static final int BACKLOG = 4096;
+    private static final long PLATFORM_STACK_BYTES = 256 * 1024;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService sessions;
+    private final ServerStatistics statistics = new ServerStatistics();
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        GameServer server = new GameServer(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            System.out.println("Move latency: " + server.getStatistics());
+        }));
+        System.out.println("Listening on " + server.serverSocket.getLocalSocketAddress()
+                + (isVirtual(server.sessions) ? " (virtual threads)" : " (platform threads)"));
+        server.serve();
+    }
+
+    /**
+     * Opens the listening socket on the loopback interface. Connections are not accepted until
+     * serve is called.
+     *
+     * @param port The port to listen on, or 0 to pick a free one.
+     * @throws IOException If the socket cannot be opened.
+     */
+    public GameServer(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+        this.sessions = newSessionExecutor();
+    }
+
+    /**
+     * Accepts connections until the server is closed, starting a session for each one.
+     * This method blocks the calling thread.
+     */
+    public void serve() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                sessions.execute(() -> handle(socket));
+            } catch (SocketException e) {
+                // The server socket has been closed
+                return;
+            } catch (IOException e) {
+                System.out.println("Accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections and interrupts the running sessions.
+     */
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            System.out.println("Error closing the server socket: " + e.getMessage());
+        }
+        sessions.shutdownNow();
+        try {
+            sessions.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Retrieves the port the server is listening on.
+     *
+     * @return The local port.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Retrieves the session counters and MOVE latency histogram shared by all sessions.
+     *
+     * @return The server statistics.
+     */
+    public ServerStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Creates the executor that runs one task per session: a virtual-thread-per-task executor
+     * when the JVM provides one, otherwise a cached pool of daemon threads with a small stack.
+     *
+     * @return A new executor.
+     */
+    public static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Virtual threads are not available (or still a preview feature) on this JVM
+            ThreadFactory factory = new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(null, task, "session-" + count.incrementAndGet(), PLATFORM_STACK_BYTES);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            };
+            return Executors.newCachedThreadPool(factory);
+        }
+    }
+
+    private static boolean isVirtual(ExecutorService executor) {
+        return !(executor instanceof ThreadPoolExecutor);
+    }
+
+    // Runs one connection: reads lines, executes them and writes back one reply line each
+    private void handle(Socket socket) {
+        statistics.sessionOpened();
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            GameSession session = new GameSession(statistics);
+            writeLine(out, GameSession.GREETING);
+
+            byte[] buffer = new byte[READ_BUFFER];
+            byte[] line = new byte[MAX_LINE];
+            int length = 0;
+            boolean overflow = false;
+            int read;
+            while (!session.isClosed() && (read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read && !session.isClosed(); i++) {
+                    byte b = buffer[i];
+                    if (b == '\n') {
+                        if (overflow) {
+                            writeLine(out, "ERR line too long");
+                        } else {
+                            writeLine(out, session.execute(new String(line, 0, length, StandardCharsets.ISO_8859_1)));
+                        }
+                        length = 0;
+                        overflow = false;
+                    } else if (b != '\r') {
+                        if (length < MAX_LINE) {
+                            line[length++] = b;
+                        } else {
+                            overflow = true;
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // The client went away; nothing to clean up beyond closing the socket
+        } finally {
+            statistics.sessionClosed();
+        }
+    }
+
+    private static void writeLine(OutputStream out, String reply) throws IOException {
+        byte[] bytes = new byte[reply.length() + 1];
+        for (int i = 0; i < reply.length(); i++) {
+            bytes[i] = (byte) reply.charAt(i);
+        }
+        bytes[reply.length()] = '\n';
+        out.write(bytes);
+    }
+}
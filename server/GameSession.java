@@ -0,0 +1,174 @@
+package server;
+
+import controller.GameController;
+import model.BitboardPosition;
+import model.GameState;
+import model.Move;
+import model.MoveGenerator;
+import model.MoveNotation;
+
+/**
+ * One game hosted by the server, together with the line protocol used to play it.
+ *
+ * A session owns its own GameState and GameController, so the rules are exactly those of the
+ * desktop game and sessions share nothing mutable except the server's statistics. A session is
+ * driven by a single thread at a time: the transport reads a line, passes it to execute and
+ * writes back the single line that execute returns. The same session class is used by both
+ * transports, GameServer and SelectorServer.
+ *
+ * Squares are written as on the board margins, column letter then row number, for example "B7".
+ * Commands are case-insensitive:
+ * MOVE B7 B6   plays a move, also accepted as "MOVE B7-B6" or "MOVE B7xB6".
+ *              Replies "OK Ram B7-B6 TURN P2", or "OK Biz C3xC1 WINNER P1" when the move ends the game.
+ * MOVES        lists the legal moves of the player to move, for example "MOVES B7-B6 C8xC2".
+ * STATE        replies "STATE TURN P1 COUNT 3", or "STATE WINNER P2" once the game is over.
+ * UNDO         takes back the last move.
+ * NEW          starts a new game.
+ * STATS        replies with the server's session count and move latency percentiles.
+ * QUIT         replies "BYE", after which the transport closes the connection.
+ * Anything else is answered with a line starting with "ERR".
+ */
+public class GameSession {
+    public static final String GREETING = "KWAZAM READY";
+    public static final String BYE = "BYE";
+
+    private final GameState gameState = new GameState();
+    private final GameController gameController = new GameController(gameState);
+    private final ServerStatistics statistics;
+    private boolean closed;
+
+    /**
+     * Creates a session with a new game in its initial position.
+     *
+     * @param statistics The server statistics this session reports to.
+     */
+    public GameSession(ServerStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Executes one protocol command.
+     *
+     * @param line The command line, without its line terminator.
+     * @return The reply line, without a line terminator.
+     */
+    public String execute(CharSequence line) {
+        int start = skipSpaces(line, 0);
+        int end = start;
+        while (end < line.length() && line.charAt(end) != ' ') {
+            end++;
+        }
+        if (matches(line, start, end, "MOVE")) {
+            long begin = System.nanoTime();
+            String reply = move(line, end);
+            statistics.recordMove(System.nanoTime() - begin);
+            return reply;
+        }
+        if (matches(line, start, end, "MOVES")) {
+            return moves();
+        }
+        if (matches(line, start, end, "STATE")) {
+            return state();
+        }
+        if (matches(line, start, end, "UNDO")) {
+            if (!gameState.canUndo()) {
+                return "ERR nothing to undo";
+            }
+            gameController.undoMove();
+            return "OK";
+        }
+        if (matches(line, start, end, "NEW")) {
+            gameController.restartGame();
+            return "OK";
+        }
+        if (matches(line, start, end, "STATS")) {
+            return "STATS " + statistics;
+        }
+        if (matches(line, start, end, "QUIT")) {
+            closed = true;
+            return BYE;
+        }
+        return start == end ? "ERR empty command" : "ERR unknown command";
+    }
+
+    /**
+     * Determines whether the client has asked to end the session.
+     *
+     * @return true once QUIT has been executed.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private String move(CharSequence line, int index) {
+        index = skipSpaces(line, index);
+        int from = MoveNotation.parseSquare(line, index);
+        if (from < 0) {
+            return "ERR expected a square such as B7";
+        }
+        index += 2;
+        while (index < line.length() && (line.charAt(index) == ' ' || line.charAt(index) == '-'
+                || line.charAt(index) == 'x' || line.charAt(index) == 'X')) {
+            index++;
+        }
+        int to = MoveNotation.parseSquare(line, index);
+        if (to < 0 || skipSpaces(line, index + 2) != line.length()) {
+            return "ERR expected a square such as B6";
+        }
+
+        BitboardPosition position = gameState.getBitboards();
+        int piece = position.pieceTypeAt(from);
+        int captured = position.pieceTypeAt(to);
+        if (!gameController.tryMove(BitboardPosition.col(from), BitboardPosition.row(from),
+                BitboardPosition.col(to), BitboardPosition.row(to))) {
+            return gameState.isGameEnded() ? "ERR game over" : "ERR illegal move";
+        }
+        String played = Move.toString(Move.encode(from, to, piece, captured));
+        if (gameState.isGameEnded()) {
+            return "OK " + played + " WINNER " + gameState.getWinner();
+        }
+        return "OK " + played + " TURN " + gameState.getPlayerTurn().getName();
+    }
+
+    private String moves() {
+        if (gameState.isGameEnded()) {
+            return "MOVES";
+        }
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(gameState.getBitboards(), moves);
+        StringBuilder reply = new StringBuilder(6 + count * 6).append("MOVES");
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            reply.append(' ').append(Move.squareName(Move.from(move)))
+                    .append(Move.isCapture(move) ? 'x' : '-')
+                    .append(Move.squareName(Move.to(move)));
+        }
+        return reply.toString();
+    }
+
+    private String state() {
+        if (gameState.isGameEnded()) {
+            return "STATE WINNER " + gameState.getWinner();
+        }
+        return "STATE TURN " + gameState.getPlayerTurn().getName() + " COUNT " + gameState.getTurnCounter();
+    }
+
+    private static int skipSpaces(CharSequence line, int index) {
+        while (index < line.length() && line.charAt(index) == ' ') {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean matches(CharSequence line, int start, int end, String command) {
+        if (end - start != command.length()) {
+            return false;
+        }
+        for (int i = 0; i < command.length(); i++) {
+            if (Character.toUpperCase(line.charAt(start + i)) != command.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
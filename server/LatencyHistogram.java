@@ -0,0 +1,94 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size, lock-free histogram of durations in nanoseconds, used to report the median and
+ * tail latency of move processing across every session of the server.
+ *
+ * Durations are bucketed by their power of two and then by the next SUB_BITS bits below it, so
+ * every bucket is at most 1/16 of its value wide and a percentile is accurate to about 6%.
+ * Recording is a single atomic increment, so any number of session threads can share one
+ * histogram without locking and without allocating.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos The duration in nanoseconds. Negative values are counted as 0.
+     */
+    public void record(long nanos) {
+        counts.incrementAndGet(bucketOf(Math.max(0L, nanos)));
+    }
+
+    /**
+     * Retrieves the number of durations recorded so far.
+     *
+     * @return The total count.
+     */
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Estimates a percentile of the recorded durations. Concurrent recording may or may not be
+     * included, which is fine for monitoring.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return The upper edge of the bucket holding the percentile, in nanoseconds, or 0 if
+     *         nothing has been recorded.
+     */
+    public long percentile(double percentile) {
+        long total = count();
+        if (total == 0) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return upperEdge(i);
+            }
+        }
+        return upperEdge(BUCKETS - 1);
+    }
+
+    /**
+     * Formats the median and 99th percentile, for example "p50=12.4us p99=88.0us n=10000".
+     *
+     * @return A one-line summary of the histogram.
+     */
+    public String summary() {
+        return String.format("p50=%.1fus p99=%.1fus n=%d",
+                percentile(50) / 1000.0, percentile(99) / 1000.0, count());
+    }
+
+    // Values below SUB_BUCKETS get a bucket each; larger values keep their top SUB_BITS + 1 bits
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    private static long upperEdge(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long mantissa = SUB_BUCKETS + bucket % SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
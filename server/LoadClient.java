@@ -0,0 +1,144 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A load generator for GameServer: opens many connections at once and has each of them play
+ * random legal moves, like a crowd of simple bots, starting a new game whenever one ends.
+ *
+ * Each bot asks for the legal moves with MOVES and plays one of them with MOVE, so every move
+ * costs two round trips. When all bots are done the client prints the moves per second, the
+ * round-trip latency of MOVE as seen by the bots, and the server's own STATS line.
+ *
+ * The client does not care which transport the server uses, so the same run can be pointed at
+ * GameServer and at SelectorServer to compare them.
+ *
+ * Usage: java server.LoadClient [sessions] [movesPerSession] [port]
+ */
+public class LoadClient {
+    private final int port;
+    private final LatencyHistogram roundTrip = new LatencyHistogram();
+    private final AtomicLong moves = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int movesPerSession = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : GameServer.DEFAULT_PORT;
+
+        LoadClient client = new LoadClient(port);
+        long start = System.nanoTime();
+        client.run(sessions, movesPerSession);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d sessions, %d moves in %.1f s (%.0f moves/s), %d failed sessions%n",
+                sessions, client.moves.get(), seconds, client.moves.get() / seconds, client.failures.get());
+        System.out.println("MOVE round trip: " + client.roundTrip.summary());
+        System.out.println("Server: " + client.request("STATS"));
+    }
+
+    /**
+     * Creates a load client for a server on the loopback interface.
+     *
+     * @param port The port the server listens on.
+     */
+    public LoadClient(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Connects all bots, lets each play its moves and waits for every one of them to finish.
+     * All connections are kept open until the last bot is done, so the server really holds
+     * the requested number of sessions at the same time.
+     *
+     * @param sessions The number of simultaneous connections.
+     * @param movesPerSession The number of moves each bot plays.
+     * @throws InterruptedException If interrupted while waiting for the bots.
+     */
+    public void run(int sessions, int movesPerSession) throws InterruptedException {
+        ExecutorService executor = GameServer.newSessionExecutor();
+        CountDownLatch connected = new CountDownLatch(sessions);
+        CountDownLatch finished = new CountDownLatch(sessions);
+        for (int i = 0; i < sessions; i++) {
+            long seed = i;
+            executor.execute(() -> {
+                try {
+                    play(seed, movesPerSession, connected, finished);
+                } catch (IOException e) {
+                    failures.incrementAndGet();
+                    connected.countDown();
+                    finished.countDown();
+                }
+            });
+        }
+        finished.await();
+        executor.shutdownNow();
+    }
+
+    private void play(long seed, int movesPerSession, CountDownLatch connected, CountDownLatch finished)
+            throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+            OutputStream out = socket.getOutputStream();
+            in.readLine();
+            connected.countDown();
+            try {
+                connected.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            Random random = new Random(seed);
+            for (int i = 0; i < movesPerSession; i++) {
+                String[] legal = exchange(in, out, "MOVES").split(" ");
+                if (legal.length < 2) {
+                    exchange(in, out, "NEW");
+                    continue;
+                }
+                String move = legal[1 + random.nextInt(legal.length - 1)];
+                long begin = System.nanoTime();
+                String reply = exchange(in, out, "MOVE " + move);
+                roundTrip.record(System.nanoTime() - begin);
+                moves.incrementAndGet();
+                if (reply.contains("WINNER")) {
+                    exchange(in, out, "NEW");
+                }
+            }
+            finished.countDown();
+            // Hold the connection until every bot is done
+            try {
+                finished.await();
+            } catch (InterruptedException e) {
+                // Shutting down
+            }
+        }
+    }
+
+    private String request(String command) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+            in.readLine();
+            return exchange(in, socket.getOutputStream(), command);
+        }
+    }
+
+    private static String exchange(BufferedReader in, OutputStream out, String command) throws IOException {
+        out.write((command + "\n").getBytes(StandardCharsets.ISO_8859_1));
+        String reply = in.readLine();
+        if (reply == null) {
+            throw new IOException("Connection closed by the server");
+        }
+        return reply;
+    }
+}
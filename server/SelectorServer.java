@@ -0,0 +1,349 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A non-blocking transport for the game server: a few event-loop threads, each with its own
+ * Selector, serve the same line protocol as GameServer (see GameSession) to any number of
+ * connections, so the two can be compared on connection density and tail latency.
+ *
+ * The first loop also accepts connections and hands them out to the loops in turn. Every
+ * connection owns a GameSession and two direct ByteBuffers, allocated when it is accepted and
+ * reused for its whole life: incoming bytes are split into lines in place and handed to the
+ * session through a reusable CharSequence view, so reading a command allocates nothing, and
+ * replies are encoded straight into the output buffer. A connection whose replies cannot be
+ * written out immediately stops being read until the client catches up.
+ *
+ * Usage: java server.SelectorServer [port] [loops]
+ */
+public class SelectorServer implements AutoCloseable {
+    private static final int INPUT_BUFFER = GameServer.MAX_LINE * 2;
+    private static final int OUTPUT_BUFFER = 512;
+
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] loops;
+    private final ServerStatistics statistics = new ServerStatistics();
+    private int nextLoop;
+    private volatile boolean running = true;
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : GameServer.DEFAULT_PORT;
+        int loops = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        SelectorServer server = new SelectorServer(port, loops);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            System.out.println("Move latency: " + server.getStatistics());
+        }));
+        System.out.println("Listening on " + server.serverChannel.getLocalAddress() + " (" + loops + " selector threads)");
+        server.start();
+    }
+
+    /**
+     * Opens the listening channel on the loopback interface. Connections are not accepted until
+     * start is called.
+     *
+     * @param port The port to listen on, or 0 to pick a free one.
+     * @param loops The number of event-loop threads, at least 1.
+     * @throws IOException If the channel or a selector cannot be opened.
+     */
+    public SelectorServer(int port, int loops) throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 4096);
+        serverChannel.configureBlocking(false);
+        this.loops = new EventLoop[Math.max(1, loops)];
+        for (int i = 0; i < this.loops.length; i++) {
+            this.loops[i] = new EventLoop(Selector.open());
+        }
+        serverChannel.register(this.loops[0].selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Starts the event-loop threads and returns immediately.
+     */
+    public void start() {
+        for (int i = 0; i < loops.length; i++) {
+            Thread thread = new Thread(loops[i], "selector-" + i);
+            thread.setDaemon(i > 0);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops accepting connections, closes every open connection and stops the event loops.
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (EventLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            System.out.println("Error closing the server channel: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Retrieves the port the server is listening on.
+     *
+     * @return The local port.
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Retrieves the session counters and MOVE latency histogram shared by all connections.
+     *
+     * @return The server statistics.
+     */
+    public ServerStatistics getStatistics() {
+        return statistics;
+    }
+
+    // Accepts every pending connection and passes each one to the next loop in turn
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            EventLoop loop = loops[nextLoop];
+            nextLoop = (nextLoop + 1) % loops.length;
+            loop.pending.add(channel);
+            if (loop != loops[0]) {
+                loop.selector.wakeup();
+            }
+        }
+    }
+
+    /**
+     * One selector and the connections registered with it. All of a connection's reads, command
+     * execution and writes happen on its loop's thread, so sessions need no locking.
+     */
+    private class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+
+        EventLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    registerPending();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                            registerPending();
+                        } else {
+                            ((Connection) key.attachment()).service(key);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Selector failed: " + e.getMessage());
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.attachment() instanceof Connection connection) {
+                        connection.close(key);
+                    }
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    // Nothing more to release
+                }
+            }
+        }
+
+        private void registerPending() {
+            SocketChannel channel;
+            while ((channel = pending.poll()) != null) {
+                try {
+                    Connection connection = new Connection(channel);
+                    SelectionKey key = channel.register(selector, SelectionKey.OP_READ, connection);
+                    connection.reply(GameSession.GREETING);
+                    connection.flush(key);
+                } catch (IOException e) {
+                    try {
+                        channel.close();
+                    } catch (IOException ignored) {
+                        // Already gone
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The state of one connection: its game session, its reusable direct buffers and the view
+     * through which complete lines are passed to the session.
+     */
+    private class Connection {
+        private final SocketChannel channel;
+        private final GameSession session = new GameSession(statistics);
+        private final ByteBuffer input = ByteBuffer.allocateDirect(INPUT_BUFFER);
+        private ByteBuffer output = ByteBuffer.allocateDirect(OUTPUT_BUFFER);
+        private final BufferLine line = new BufferLine();
+        private boolean discarding;
+        private boolean closed;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+            statistics.sessionOpened();
+        }
+
+        // Called when the channel is readable or, while replies are backed up, writable
+        void service(SelectionKey key) {
+            try {
+                if (key.isWritable()) {
+                    flush(key);
+                    return;
+                }
+                if (channel.read(input) < 0) {
+                    close(key);
+                    return;
+                }
+                input.flip();
+                processLines();
+                input.compact();
+                if (!input.hasRemaining()) {
+                    // A full buffer without a line break: drop it and answer once the line ends
+                    input.clear();
+                    discarding = true;
+                }
+                flush(key);
+            } catch (IOException e) {
+                close(key);
+            }
+        }
+
+        // Executes every complete line in the input buffer, leaving a partial line in place
+        private void processLines() {
+            int start = input.position();
+            for (int i = start; i < input.limit(); i++) {
+                byte b = input.get(i);
+                if (b != '\n') {
+                    continue;
+                }
+                int end = i > start && input.get(i - 1) == '\r' ? i - 1 : i;
+                // Same limit as GameServer, although the buffer could hold longer lines
+                if (discarding || end - start > GameServer.MAX_LINE) {
+                    reply("ERR line too long");
+                    discarding = false;
+                } else {
+                    line.wrap(input, start, end - start);
+                    reply(session.execute(line));
+                }
+                start = i + 1;
+                if (session.isClosed()) {
+                    break;
+                }
+            }
+            input.position(start);
+        }
+
+        // Appends a reply line to the output buffer, growing it for the rare reply that does not fit
+        void reply(String text) {
+            if (output.remaining() < text.length() + 1) {
+                ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(output.capacity() * 2, output.position() + text.length() + 1));
+                output.flip();
+                larger.put(output);
+                output = larger;
+            }
+            for (int i = 0; i < text.length(); i++) {
+                output.put((byte) text.charAt(i));
+            }
+            output.put((byte) '\n');
+        }
+
+        // Writes out as much as the socket takes, switching to write interest if some is left
+        void flush(SelectionKey key) throws IOException {
+            output.flip();
+            channel.write(output);
+            output.compact();
+            if (output.position() > 0) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else if (session.isClosed()) {
+                close(key);
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        void close(SelectionKey key) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+            statistics.sessionClosed();
+        }
+    }
+
+    /**
+     * A CharSequence over a range of ASCII bytes in a ByteBuffer, so a command can be parsed
+     * where it was read without copying it into a String.
+     */
+    private static class BufferLine implements CharSequence {
+        private ByteBuffer buffer;
+        private int offset;
+        private int length;
+
+        void wrap(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(offset + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                text.append(charAt(i));
+            }
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters shared by every session of a server, whichever transport it uses: the number of open
+ * and total sessions and the histogram of MOVE processing times. All methods are thread-safe and
+ * lock-free, so sessions on any number of threads can report to one instance.
+ */
+public class ServerStatistics {
+    private final LatencyHistogram moveLatency = new LatencyHistogram();
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final AtomicLong totalSessions = new AtomicLong();
+
+    /**
+     * Records that a session has started.
+     */
+    public void sessionOpened() {
+        activeSessions.incrementAndGet();
+        totalSessions.incrementAndGet();
+    }
+
+    /**
+     * Records that a session has finished.
+     */
+    public void sessionClosed() {
+        activeSessions.decrementAndGet();
+    }
+
+    /**
+     * Records the time taken to process one MOVE command.
+     *
+     * @param nanos The processing time in nanoseconds.
+     */
+    public void recordMove(long nanos) {
+        moveLatency.record(nanos);
+    }
+
+    /**
+     * Retrieves the histogram of MOVE processing times.
+     *
+     * @return The move latency histogram.
+     */
+    public LatencyHistogram getMoveLatency() {
+        return moveLatency;
+    }
+
+    /**
+     * Retrieves the number of sessions currently open.
+     *
+     * @return The open session count.
+     */
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    /**
+     * Formats the current statistics, for example "sessions=10000 total=10000 p50=11.0us p99=60.0us n=52000".
+     *
+     * @return A one-line summary of the open sessions and move latency.
+     */
+    @Override
+    public String toString() {
+        return "sessions=" + activeSessions.get() + " total=" + totalSessions.get() + " " + moveLatency.summary();
+    }
+}
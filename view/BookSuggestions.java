@@ -0,0 +1,72 @@
+package view;
+
+import controller.GameController;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * The BookSuggestions class shows the opening book moves of the current position in a small
+ * table below the moves history: each move with the number of archived games it was played in
+ * and how well it scored for the player making it.
+ *
+ * The table stays hidden unless the GameController has an opening book, and is empty once the
+ * game leaves the book.
+ */
+public class BookSuggestions {
+    public static final int MAX_SUGGESTIONS = 5;
+
+    private final JTable suggestionsTable;
+    private final DefaultTableModel tableModel;
+    private final GameController gameController;
+    private JScrollPane suggestionsScrollPane;
+
+    /**
+     * Creates the table of book moves for the game of a controller.
+     *
+     * @param gameController The controller of the game whose position is looked up.
+     */
+    public BookSuggestions(GameController gameController) {
+        this.gameController = gameController;
+
+        tableModel = new DefaultTableModel(new String[]{"Book Moves"}, 0);
+        suggestionsTable = new JTable(tableModel);
+        suggestionsTable.setBackground(Color.BLACK);
+        suggestionsTable.setForeground(Color.WHITE);
+        suggestionsTable.setGridColor(Color.WHITE);
+
+        updateTable();
+    }
+
+    /**
+     * Refills the table with the book moves of the current position and shows or hides it
+     * depending on whether there is an opening book at all.
+     */
+    public void updateTable() {
+        List<String> suggestions = gameController.getBookSuggestions(MAX_SUGGESTIONS);
+        tableModel.setRowCount(0);
+        for (String suggestion : suggestions) {
+            tableModel.addRow(new Object[]{suggestion});
+        }
+        if (suggestionsScrollPane != null) {
+            suggestionsScrollPane.setVisible(gameController.hasOpeningBook());
+        }
+    }
+
+    /**
+     * Retrieves the scroll pane wrapping the table, styled like the moves history.
+     *
+     * @return The JScrollPane containing the book moves table.
+     */
+    public JScrollPane getSuggestionsScrollPane() {
+        suggestionsScrollPane = new JScrollPane(suggestionsTable);
+        suggestionsScrollPane.setBackground(Color.BLACK);
+        suggestionsScrollPane.getViewport().setBackground(Color.BLACK);
+        suggestionsScrollPane.setBorder(BorderFactory.createLineBorder(Color.BLACK));
+        suggestionsScrollPane.setPreferredSize(new Dimension(200, (MAX_SUGGESTIONS + 1) * suggestionsTable.getRowHeight() + 4));
+        suggestionsScrollPane.setVisible(gameController.hasOpeningBook());
+        return suggestionsScrollPane;
+    }
+}
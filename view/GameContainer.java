@@ -33,6 +33,7 @@ public class GameContainer extends JPanel implements Observer {
     private GameController gameController;
     private JScrollPane movesScrollPane;
     private MovesHistory movesHistory;
+    private BookSuggestions bookSuggestions;
     private MenuView menuView;
 
     /**
@@ -62,7 +63,8 @@ public class GameContainer extends JPanel implements Observer {
 
         // Initialize the MenuView (View) with the controller.MenuController as the listener
         menuView = new MenuView(menuController);
-        movesHistory = new MovesHistory();
+        movesHistory = new MovesHistory(gameController);
+        bookSuggestions = new BookSuggestions(gameController);
 
         // Add a ComponentListener to detect resizing
         addComponentListener(new ComponentAdapter() {
@@ -86,8 +88,12 @@ public class GameContainer extends JPanel implements Observer {
 
         movesScrollPane = movesHistory.getMoveHistoryScrollPane();
 
-        // Add the JScrollPane to the frame
-        frame.add(movesScrollPane, BorderLayout.EAST);
+        // Add the JScrollPane to the frame, with the opening book moves below it
+        JPanel sidePanel = new JPanel(new BorderLayout());
+        sidePanel.setBackground(Color.BLACK);
+        sidePanel.add(movesScrollPane, BorderLayout.CENTER);
+        sidePanel.add(bookSuggestions.getSuggestionsScrollPane(), BorderLayout.SOUTH);
+        frame.add(sidePanel, BorderLayout.EAST);
 
         frame.setJMenuBar(menuView.getMenuBar());
 
@@ -118,6 +124,7 @@ public class GameContainer extends JPanel implements Observer {
         renderer.draw(g2);
         marginText.draw(g2);
         movesHistory.updateTable();
+        bookSuggestions.updateTable();
     }
 
     /**
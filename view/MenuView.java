@@ -63,6 +63,12 @@ public class MenuView {
         restartItem.addActionListener(listener);
         fileMenu.add(restartItem);
 
+        // Undo option
+        JMenuItem undoItem = new JMenuItem("Undo");
+        undoItem.setActionCommand("Undo");
+        undoItem.addActionListener(listener);
+        fileMenu.add(undoItem);
+
         // Help option
         JMenuItem helpItem = new JMenuItem("Help");
         helpItem.setActionCommand("Help");
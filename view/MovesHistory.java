@@ -23,7 +23,8 @@ import java.util.ArrayList;
 public class MovesHistory {
     private JTable moveHistory;
     private JScrollPane moveHistoryScrollPane;
-    private static DefaultTableModel tableModel;
+    private final DefaultTableModel tableModel;
+    private final GameController gameController;
 
     /**
      * The MovesHistory class is responsible for managing and displaying the history of player moves during a game.
@@ -34,9 +35,13 @@ public class MovesHistory {
      * It is particularly useful for debugging, reviewing game flow, or providing an enhanced player experience.
      *
      * Part of View in the context of an MVC (Model-View-Controller) architecture.
+     *
+     * @param gameController The controller of the game whose moves are shown.
      * Coded by Harrish Panicker
      */
-    public MovesHistory() {
+    public MovesHistory(GameController gameController) {
+        this.gameController = gameController;
+
         // Define column names
         String[] columnNames = {"Turn", "P1 Move", "P2 Move"};
 
@@ -72,7 +77,7 @@ public class MovesHistory {
         tableModel.setRowCount(0);
 
         // Fetch the movesHistory from GameController
-        ArrayList<String> moves = GameController.getMovesHistory();
+        ArrayList<String> moves = gameController.getMovesHistory();
 
         // Populate the table with turn-based moves
         int turnCounter = 1;
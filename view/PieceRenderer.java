@@ -1,8 +1,10 @@
 package view;
 
 import controller.GameController;
+import model.BitboardPosition;
+import model.Move;
+import model.MoveGenerator;
 import model.Piece;
-import model.intPair;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
@@ -39,6 +41,9 @@ public class PieceRenderer {
      */
     private final Map<String, BufferedImage> pieceImages;
 
+    // Reused on every repaint so that highlighting valid moves does not allocate
+    private final int[] moveBuffer = new int[MoveGenerator.MAX_PIECE_MOVES];
+
     /**
      * The PieceRenderer class is responsible for rendering game pieces on the board.
      * It loads and maintains visual representations of the pieces and handles their drawing and positioning during gameplay.
@@ -142,24 +147,21 @@ public class PieceRenderer {
         Piece currentPiece = gameController.getCurrentPiece();
 
         if (currentPiece != null) {
-            var moves = gameController.getMoves();
+            int count = gameController.generateMoves(moveBuffer);
             boolean isEvenTurn = gameController.getCurrentTurn() % 2 == 0;
 
-            if (moves == null) {
-                return;
-            }
-
-            for (intPair move : moves) {
-                int x = isEvenTurn ? move.getX() * Board.SquareSize : (4 - move.getX()) * Board.SquareSize;
-                int y = isEvenTurn ? move.getY() * Board.SquareSize : (7 - move.getY()) * Board.SquareSize;
-
-                Piece targetPiece = gameController.getPiece(move.getX(), move.getY());
-                if (targetPiece == null || !targetPiece.getOwnerName().equals(currentPiece.getOwnerName())) {
-                    g2.setColor(Color.PINK);
-                    g2.fillRect(x, y, Board.SquareSize, Board.SquareSize);
-                    g2.setColor(Color.BLACK);
-                    g2.drawRect(x, y, Board.SquareSize, Board.SquareSize);
-                }
+            // The generator never returns tiles held by the mover's own pieces
+            for (int i = 0; i < count; i++) {
+                int destination = Move.to(moveBuffer[i]);
+                int col = BitboardPosition.col(destination);
+                int row = BitboardPosition.row(destination);
+                int x = isEvenTurn ? col * Board.SquareSize : (4 - col) * Board.SquareSize;
+                int y = isEvenTurn ? row * Board.SquareSize : (7 - row) * Board.SquareSize;
+
+                g2.setColor(Color.PINK);
+                g2.fillRect(x, y, Board.SquareSize, Board.SquareSize);
+                g2.setColor(Color.BLACK);
+                g2.drawRect(x, y, Board.SquareSize, Board.SquareSize);
             }
         }
     }